@@ -0,0 +1,115 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.bench;
+
+import java.util.ArrayList;
+import fibrous.fi.FiCLI;
+import fibrous.fi.FiCommand;
+import fibrous.fi.FiContext;
+import fibrous.fi.FiInputStream;
+import fibrous.fi.FiOutputStream;
+import fibrous.fi.FiSession;
+
+/**
+ * Builds the command sets that the benchmarks run against.
+ */
+final class BenchSupport {
+	
+	private BenchSupport() {
+	}
+	
+	/**
+	 * An output stream that throws everything away, so benchmarks measure FiCLI instead of the console.
+	 */
+	static final class NullOutput implements FiOutputStream {
+		
+		int written;
+		
+		@Override
+		public void print(String s) {
+			written += s.length();
+		}
+
+		@Override
+		public void println(String s) {
+			written += s.length() + 1;
+		}
+	}
+	
+	/**
+	 * A command that does nothing except look at its arguments, so only dispatching is measured.
+	 */
+	static final class NoOpCommand extends FiCommand {
+		
+		int lastArgumentCount;
+		
+		NoOpCommand(String commandString) {
+			super(commandString);
+			commandDescription = "Benchmark command " + commandString;
+		}
+		
+		@Override
+		public void execute(FiContext context) {
+			lastArgumentCount = context.getArguments().size();
+		}
+	}
+	
+	/**
+	 * Returns the commandString of the i-th generated command.
+	 * Half of the commands are two words long, like "get record".
+	 */
+	static String commandString(int i) {
+		String name = "cmd" + Integer.toString(i, 36);
+		return (i & 1) == 0 ? name : name + " record";
+	}
+	
+	/**
+	 * Creates an FiCLI with the given number of generated commands, writing to the given output.
+	 */
+	static FiCLI createCLI(int commands, FiOutputStream os) {
+		FiCLI cli = new FiCLI((FiInputStream) null, os, "?");
+		
+		ArrayList<FiCommand> list = new ArrayList<>(commands);
+		for(int i = 0; i < commands; i++)
+			list.add(new NoOpCommand(commandString(i)));
+		
+		cli.addCommands(list);
+		return cli;
+	}
+	
+	/**
+	 * Creates a session that writes to the given output.
+	 */
+	static FiSession createSession(FiOutputStream os) {
+		return new FiSession(null, os);
+	}
+}
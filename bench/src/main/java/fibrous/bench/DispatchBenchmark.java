@@ -0,0 +1,120 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fibrous.fi.FiCLI;
+import fibrous.fi.FiCommand;
+import fibrous.fi.FiDispatcher;
+import fibrous.fi.FiSession;
+import fibrous.fi.FiState;
+
+/**
+ * Measures how quickly a line of input is matched to one of many registered commands and executed.
+ * Run with "-prof gc" to see the allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+	
+	@Param({"10", "1000", "100000"})
+	public int commands;
+	
+	private FiCLI cli;
+	private FiSession session;
+	private FiDispatcher dispatcher;
+	private String[] lines;
+	private String invalidLine;
+	private FiCommand lastCommand;
+	private String lastLine;
+	private int next;
+	
+	@Setup
+	public void setup() {
+		BenchSupport.NullOutput os = new BenchSupport.NullOutput();
+		cli = BenchSupport.createCLI(commands, os);
+		session = BenchSupport.createSession(os);
+		dispatcher = new FiDispatcher(cli, session);
+		
+		//A fixed, shuffled selection of commands so every run hits the same spread of the command set
+		Random random = new Random(42);
+		lines = new String[1024];
+		for(int i = 0; i < lines.length; i++)
+			lines[i] = BenchSupport.commandString(random.nextInt(commands)) + " 12 abc";
+		
+		invalidLine = "does not exist 12 abc";
+		
+		//The command that sorts last is the worst case for the old linear search
+		lastCommand = cli.getCommands().get(commands - 1);
+		lastLine = lastCommand.commandString + " 12 abc";
+	}
+	
+	@Benchmark
+	public int processCommand() {
+		String line = lines[next++ & (lines.length - 1)];
+		return cli.processCommand(line, session).state;
+	}
+	
+	@Benchmark
+	public int dispatcher() {
+		String line = lines[next++ & (lines.length - 1)];
+		return dispatcher.dispatch(line).state;
+	}
+	
+	@Benchmark
+	public FiState processInvalidCommand() {
+		return cli.processCommand(invalidLine, session);
+	}
+	
+	@Benchmark
+	public boolean isCommand() {
+		return lastCommand.isCommand(lastLine);
+	}
+}
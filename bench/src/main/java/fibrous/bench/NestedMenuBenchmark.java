@@ -0,0 +1,163 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fibrous.fi.FiCLI;
+import fibrous.fi.FiCommand;
+import fibrous.fi.FiContext;
+import fibrous.fi.FiInputStream;
+import fibrous.fi.FiMenu;
+import fibrous.fi.FiSession;
+import fibrous.fi.FiState;
+
+/**
+ * Measures entering a nested menu, running one command in it, and backing out,
+ * both for a menu built the same way as the NestedCommands example, and for an {@link FiMenu}.
+ * Running the command through its whole path, without entering the FiMenu, is measured as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NestedMenuBenchmark {
+	
+	private FiCLI cli;
+	private FiSession session;
+	private ScriptedInput input;
+	
+	private FiCLI menuCLI;
+	private FiSession menuSession;
+	
+	/**
+	 * Replays the same lines forever.
+	 */
+	static final class ScriptedInput implements FiInputStream {
+		
+		private final String[] lines;
+		private int next;
+		
+		ScriptedInput(String... lines) {
+			this.lines = lines;
+		}
+		
+		@Override
+		public String readLine() {
+			String line = lines[next];
+			next = (next + 1) % lines.length;
+			return line;
+		}
+	}
+	
+	/**
+	 * Adds its two arguments, without printing to the console.
+	 */
+	static final class QuietAddCommand extends FiCommand {
+		
+		int sum;
+		
+		QuietAddCommand(String commandString) {
+			super(commandString);
+		}
+		
+		@Override
+		public void execute(FiContext context) {
+			sum = Integer.parseInt(context.getArguments().get(0)) + Integer.parseInt(context.getArguments().get(1));
+		}
+	}
+	
+	/**
+	 * Builds a new menu every time it is entered, like NestedCommands.
+	 */
+	static final class MenuCommand extends FiCommand {
+		
+		MenuCommand(String commandString) {
+			super(commandString);
+		}
+		
+		@Override
+		public void execute(FiContext context) {
+			FiCLI nested = new FiCLI(context.getSession().getInputStream(), context.getOutputStream(), "?");
+			nested.allowAdditionalStates(false, true);
+			nested.addCommand(new QuietAddCommand("add"));
+			nested.setCaret("Menu > ");
+			
+			while(nested.processCommand().state != FiState.BACK);
+		}
+	}
+	
+	@Setup
+	public void setup() {
+		BenchSupport.NullOutput os = new BenchSupport.NullOutput();
+		input = new ScriptedInput("menu", "add 2 7", "back");
+		
+		cli = new FiCLI(input, os, "?");
+		cli.addCommand(new MenuCommand("menu"));
+		session = cli.getSession();
+		
+		FiMenu menu = new FiMenu("menu");
+		menu.addCommand(new QuietAddCommand("add"));
+		
+		menuCLI = new FiCLI(new ScriptedInput("menu", "add 2 7", "back"), os, "?");
+		menuCLI.addCommand(menu);
+		menuSession = menuCLI.getSession();
+	}
+	
+	@Benchmark
+	public int enterMenu() {
+		return cli.processCommand(session).state;
+	}
+	
+	@Benchmark
+	public int enterFiMenu() {
+		return menuCLI.processCommand(menuSession).state;
+	}
+	
+	@Benchmark
+	public int dispatchFiMenuPath() {
+		return menuCLI.processCommand("menu add 2 7", menuSession).state;
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fibrous.fi.FiArguments;
+import fibrous.fi.FiTokenizer;
+
+/**
+ * Measures splitting the arguments of a line into {@link FiArguments} at different numbers of arguments.
+ * Run with "-prof gc" to see the allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+	
+	@Param({"0", "1", "4", "16", "64"})
+	public int arity;
+	
+	private String plainLine;
+	private String quotedLine;
+	private FiArguments arguments;
+	
+	@Setup
+	public void setup() {
+		StringBuilder plain = new StringBuilder("get record");
+		StringBuilder quoted = new StringBuilder("get record");
+		
+		for(int i = 0; i < arity; i++) {
+			plain.append(' ').append("arg").append(i);
+			quoted.append("  \"arg ").append(i).append("\" x\\ y");
+		}
+		
+		plainLine = plain.toString();
+		quotedLine = quoted.toString();
+		arguments = new FiArguments();
+	}
+	
+	@Benchmark
+	public int tokenizePlain() {
+		FiTokenizer.tokenize(plainLine, 10, arguments);
+		return arguments.size();
+	}
+	
+	@Benchmark
+	public int tokenizeQuoted() {
+		FiTokenizer.tokenize(quotedLine, 10, arguments);
+		return arguments.size();
+	}
+	
+	@Benchmark
+	public int tokenizeAndMaterialize() {
+		FiTokenizer.tokenize(plainLine, 10, arguments);
+		
+		int length = 0;
+		for(int i = 0; i < arguments.size(); i++)
+			length += arguments.get(i).length();
+		
+		return length;
+	}
+}
@@ -32,9 +32,13 @@
 package fibrous.example;
 
 import fibrous.fi.FiCommand;
+import fibrous.fi.FiContext;
+import fibrous.fi.FiOptions;
+import fibrous.fi.FiSchema;
 
 /**
  * This command just adds two arguments together.
+ * The arguments are declared in a {@link FiSchema}, so they are already checked and converted when the command is executed.
  * @author noahm
  *
  */
@@ -44,21 +48,22 @@ public class AddCommand extends FiCommand {
 		super(commandString);
 		
 		commandDescription = "Usage example: add 5 9";
+		
+		schema = new FiSchema();
+		schema.positional("a", FiSchema.INT);
+		schema.positional("b", FiSchema.INT);
 	}
 
 	@Override
-	public void execute() {
+	public void execute(FiContext context) {
+		FiOptions options = context.getOptions();
 		
-		try {
-			int a = Integer.parseInt(arguments.get(0));
-			int b = Integer.parseInt(arguments.get(1));
+		int a = options.getInt("a");
+		int b = options.getInt("b");
 		
-			int sum = a + b;
+		int sum = a + b;
 		
-			System.out.println(a + " + " + b + " = " + sum);
-		} catch(Exception e) {
-			System.out.println("Error while perfoming an addition operation!!!");
-		}
+		context.getOutputStream().println(a + " + " + b + " = " + sum);
 	}
 
 }
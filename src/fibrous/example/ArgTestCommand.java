@@ -31,7 +31,10 @@
 
 package fibrous.example;
 
+import fibrous.fi.FiArguments;
 import fibrous.fi.FiCommand;
+import fibrous.fi.FiContext;
+import fibrous.fi.FiOutputStream;
 
 /**
  * This command takes all of it's arguments and prints them out.
@@ -47,18 +50,20 @@ public class ArgTestCommand extends FiCommand {
 	}
 	
 	@Override
-	public void execute() {
+	public void execute(FiContext context) {
+		FiArguments arguments = context.getArguments();
+		FiOutputStream os = context.getOutputStream();
 		
 		if(arguments.size() == 0) {
-			System.out.println("No arguments were input!");
+			os.println("No arguments were input!");
 			return;
 		}
 		
-		System.out.println("Arguments: ");
+		os.println("Arguments: ");
 		
 		for(int i = 0; i < arguments.size(); i++) {
-			System.out.print(arguments.get(i) + ", ");
+			os.print(arguments.get(i) + ", ");
 		}
-		System.out.println();
+		os.println("");
 	}
 }
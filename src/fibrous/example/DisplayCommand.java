@@ -32,6 +32,7 @@
 package fibrous.example;
 
 import fibrous.fi.FiCommand;
+import fibrous.fi.FiContext;
 
 /**
  * This command just displays something...
@@ -44,13 +45,16 @@ public class DisplayCommand extends FiCommand {
 		super(commandString);
 		
 		commandDescription = "This command displays something";
+		
+		//Looking up the record is read-only, so the output can be reused for 5 seconds
+		cacheTTL = 5000;
 	}
 
 	//Put in here whatever you want to happen
 	//We are displaying the record of some object...
 	@Override
-	public void execute() {
-		System.out.println("Displaying a record of something...");
+	public void execute(FiContext context) {
+		context.getOutputStream().println("Displaying a record of something...");
 
 	}
 	
@@ -32,6 +32,7 @@
 package fibrous.example;
 
 import fibrous.fi.FiCLI;
+import fibrous.fi.FiOutputStream;
 import fibrous.fi.FiState;
 
 /*
@@ -54,6 +55,9 @@ public class ExampleCLI {
 		//This command is not needed as this is the default caret.
 		parser.setCaret("> ");
 		
+		//Messages are written to the same output as the commands, so they stay in order with any command output.
+		FiOutputStream os = parser.getOutputStream();
+		
 		while(true) {
 			//Creating an FiState object which can allow us to understand what the system saw.
 			//It also allows us to see what the input was.
@@ -64,8 +68,17 @@ public class ExampleCLI {
 			if(state.state == FiState.EXIT)
 				System.exit(0);
 			
-			if(state.state == FiState.INVALID)
-				System.out.println('"' + state.input + '"' + " is an invalid command");
+			if(state.state == FiState.INVALID) {
+				os.println('"' + state.input + '"' + " is an invalid command");
+				
+				//The FiCLI suggests the commands that are closest to what was input
+				if(!state.suggestions.isEmpty())
+					os.println("Did you mean: " + String.join(", ", state.suggestions) + "?");
+			}
+			
+			//A command was found, but its arguments didn't fit its schema
+			if(state.state == FiState.INVALID_ARGUMENTS)
+				os.println(state.message);
 			
 		}
 	}
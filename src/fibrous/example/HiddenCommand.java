@@ -32,6 +32,8 @@
 package fibrous.example;
 
 import fibrous.fi.FiCommand;
+import fibrous.fi.FiContext;
+import fibrous.fi.FiOutputStream;
 
 public class HiddenCommand extends FiCommand {
 
@@ -41,9 +43,11 @@ public class HiddenCommand extends FiCommand {
 	}
 
 	@Override
-	public void execute() {
-		System.out.println("This is a hidden command.");
-		System.out.println("Use this functionality if you don't want a command listed for some reason.");
+	public void execute(FiContext context) {
+		FiOutputStream os = context.getOutputStream();
+		
+		os.println("This is a hidden command.");
+		os.println("Use this functionality if you don't want a command listed for some reason.");
 	}
 
 }
@@ -31,46 +31,27 @@
 
 package fibrous.example;
 
-import fibrous.fi.FiCLI;
-import fibrous.fi.FiCommand;
-import fibrous.fi.FiState;
+import fibrous.fi.FiMenu;
 
 /**
  * This command enters you into a menu.
+ * The menu is built once, and typing "menu add 2 7" runs the add command without entering the menu.
  * @author noahm
  *
  */
-public class NestedCommands extends FiCommand {
+public class NestedCommands extends FiMenu {
 
 	public NestedCommands(String commandString) {
 		super(commandString);
 		
 		commandDescription = "Puts you into a menu with more commands";
-	}
-
-	@Override
-	public void execute() {
-		//Creating a new parser
-		//'?' is the default command listing string.
-		FiCLI nestedParser = new FiCLI();
-		
-		//Allow the EXIT and BACK states to be returned.
-		//If not set, only the EXIT state is allowed by default.
-		nestedParser.allowAdditionalStates(false, true);
 		
-		nestedParser.addCommand(new AddCommand("add"));
-		nestedParser.setCaret("Menu > ");
+		//Only allow the BACK state inside of this menu.
+		//The EXIT state is allowed in menus by default.
+		getCLI().allowAdditionalStates(false, true);
 		
-		while(true) {
-			FiState state = nestedParser.processCommand();
-			
-			//Exit out of this input loop if the back state is returned.
-			if(state.state == FiState.BACK)
-				break;
-			
-			if(state.state == FiState.INVALID)
-				System.out.println('"' + state.input + '"' + " is an invalid command");
-		}
+		addCommand(new AddCommand("add"));
+		getCLI().setCaret("Menu > ");
 	}
 
 }
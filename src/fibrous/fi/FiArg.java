@@ -0,0 +1,93 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares one argument of a command declared with {@link FiCommandDef}.
+ * The arguments are added to the command's {@link FiSchema} in the order they are written, the same as calling positional() or flag().
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Repeatable(FiArg.List.class)
+public @interface FiArg {
+	
+	/**
+	 * The name of the argument. Flags are named without any dashes.
+	 */
+	String value();
+	
+	/**
+	 * One of the types defined in {@link FiSchema}, such as FiSchema.INT.
+	 */
+	int type() default FiSchema.STRING;
+	
+	/**
+	 * Set this to true if the argument is a flag instead of a positional argument.
+	 */
+	boolean flag() default false;
+	
+	/**
+	 * Whether the argument must be input.
+	 * If this isn't set, positional arguments are required unless they have a default value, and flags are optional.
+	 */
+	boolean required() default true;
+	
+	/**
+	 * The value that is used when the argument isn't input, as it would be input.
+	 * If this isn't set, the argument has no default.
+	 */
+	String defaultValue() default "";
+	
+	/**
+	 * The only values a STRING argument can have.
+	 * If this isn't set, any value is allowed.
+	 */
+	String[] values() default {};
+	
+	/**
+	 * Holds repeated {@link FiArg} annotations.
+	 */
+	@Documented
+	@Retention(RetentionPolicy.SOURCE)
+	@Target({ElementType.TYPE, ElementType.METHOD})
+	public @interface List {
+		FiArg[] value();
+	}
+}
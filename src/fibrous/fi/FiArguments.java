@@ -0,0 +1,239 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The arguments that followed a commandString in a line of input, as split up by the {@link FiTokenizer}.
+ * The characters of every argument are kept in a single reusable buffer.
+ * Use {@link #view(int)} to look at an argument without creating a String,
+ * or {@link #get(int)} when a String is actually needed.
+ */
+public final class FiArguments extends AbstractList<String> implements RandomAccess {
+	
+	private char[] buffer;
+	private int length;
+	
+	private int[] starts;
+	private int[] ends;
+	private int count;
+	
+	private String[] strings;
+	private ArgumentView[] views;
+	
+	public FiArguments() {
+		buffer = new char[64];
+		starts = new int[8];
+		ends = new int[8];
+		strings = new String[8];
+		views = new ArgumentView[8];
+	}
+	
+	/**
+	 * Returns the number of arguments.
+	 */
+	@Override
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Returns the argument at the given position as a String.
+	 * The String is only created the first time it is asked for.
+	 */
+	@Override
+	public String get(int i) {
+		checkIndex(i);
+		
+		String s = strings[i];
+		if(s == null) {
+			s = new String(buffer, starts[i], ends[i] - starts[i]);
+			strings[i] = s;
+		}
+		
+		return s;
+	}
+	
+	/**
+	 * Returns the argument at the given position as a {@link CharSequence} that reads directly from the argument buffer.
+	 * The returned view is only valid until these arguments are filled again.
+	 * Call toString() on it if the value needs to be kept.
+	 * @param i
+	 * @return
+	 */
+	public CharSequence view(int i) {
+		checkIndex(i);
+		
+		ArgumentView v = views[i];
+		if(v == null) {
+			v = new ArgumentView(i);
+			views[i] = v;
+		}
+		
+		return v;
+	}
+	
+	/**
+	 * Returns the length of the argument at the given position.
+	 * @param i
+	 * @return
+	 */
+	public int length(int i) {
+		checkIndex(i);
+		return ends[i] - starts[i];
+	}
+	
+	/**
+	 * Compares the argument at the given position against a String without creating a new String.
+	 * @param i
+	 * @param s
+	 * @return
+	 */
+	public boolean equals(int i, String s) {
+		checkIndex(i);
+		
+		int start = starts[i];
+		int len = ends[i] - start;
+		if(len != s.length())
+			return false;
+		
+		for(int k = 0; k < len; k++) {
+			if(buffer[start + k] != s.charAt(k))
+				return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Removes every argument so the buffer can be filled again.
+	 */
+	void reset() {
+		for(int i = 0; i < count; i++)
+			strings[i] = null;
+		
+		count = 0;
+		length = 0;
+	}
+	
+	/**
+	 * Replaces these arguments with a copy of another set of arguments.
+	 * @param other
+	 */
+	void copyFrom(FiArguments other) {
+		reset();
+		
+		for(int i = 0; i < other.count; i++) {
+			begin();
+			for(int k = other.starts[i]; k < other.ends[i]; k++)
+				append(other.buffer[k]);
+			end();
+		}
+	}
+	
+	/**
+	 * Starts a new argument at the end of the buffer.
+	 */
+	void begin() {
+		if(count == starts.length) {
+			int newLength = count * 2;
+			starts = Arrays.copyOf(starts, newLength);
+			ends = Arrays.copyOf(ends, newLength);
+			strings = Arrays.copyOf(strings, newLength);
+			views = Arrays.copyOf(views, newLength);
+		}
+		
+		starts[count] = length;
+	}
+	
+	/**
+	 * Appends a character to the argument that is currently being built.
+	 * @param c
+	 */
+	void append(char c) {
+		if(length == buffer.length)
+			buffer = Arrays.copyOf(buffer, length * 2);
+		
+		buffer[length++] = c;
+	}
+	
+	/**
+	 * Finishes the argument that is currently being built.
+	 */
+	void end() {
+		ends[count] = length;
+		count++;
+	}
+	
+	private void checkIndex(int i) {
+		if(i < 0 || i >= count)
+			throw new IndexOutOfBoundsException("Argument " + i + " does not exist, there are " + count + " arguments");
+	}
+	
+	/**
+	 * A read-only window onto a single argument in the buffer.
+	 */
+	private final class ArgumentView implements CharSequence {
+		
+		private final int index;
+		
+		ArgumentView(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public int length() {
+			return ends[index] - starts[index];
+		}
+
+		@Override
+		public char charAt(int i) {
+			if(i < 0 || i >= length())
+				throw new IndexOutOfBoundsException(i);
+			
+			return buffer[starts[index] + i];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return toString().subSequence(start, end);
+		}
+		
+		@Override
+		public String toString() {
+			return get(index);
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A faster alternative to {@link FiConsoleIO} for commands that print a lot of output.
+ * Output is encoded as UTF-8 into a large buffer and written straight to the standard output channel,
+ * instead of going through System.out, which synchronizes and flushes on every line.
+ * The buffer is written out when it fills up, when the {@link FiCLI} prints the caret, before waiting for input,
+ * when the console IO is closed, and when the JVM shuts down.
+ * Input is read as UTF-8 through a buffered reader, which is shared by every console IO so none of them can read ahead of the others.
+ * Every console IO is held on to until it is closed, so the shutdown hook can still write out the output of one that was dropped without being closed.
+ * Output that is written directly to System.out won't be kept in order with this buffer,
+ * so commands should write to {@link FiContext#getOutputStream()} instead.
+ */
+public class FiBufferedConsoleIO implements FiInputStream, FiOutputStream, AutoCloseable {
+	
+	//Every console IO that hasn't been closed, flushed by one shared shutdown hook
+	private final static Set<FiBufferedConsoleIO> open = Collections.newSetFromMap(new IdentityHashMap<>());
+	private static boolean hookAdded = false;
+	
+	private final FileChannel channel;
+	private final CharsetEncoder encoder;
+	private final ByteBuffer buffer;
+	
+	/**
+	 * Creates a new console IO with a 64KB output buffer.
+	 */
+	public FiBufferedConsoleIO() {
+		this(64 * 1024);
+	}
+	
+	/**
+	 * Creates a new console IO with an output buffer of the given size.
+	 * @param bufferSize
+	 */
+	@SuppressWarnings("resource")
+	public FiBufferedConsoleIO(int bufferSize) {
+		channel = new FileOutputStream(FileDescriptor.out).getChannel();
+		
+		encoder = StandardCharsets.UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		
+		buffer = ByteBuffer.allocateDirect(bufferSize);
+		
+		//Don't lose output that is still buffered when the application exits
+		register(this);
+	}
+	
+	private static synchronized void register(FiBufferedConsoleIO io) {
+		open.add(io);
+		
+		if(!hookAdded) {
+			Runtime.getRuntime().addShutdownHook(new Thread(FiBufferedConsoleIO::flushOpen, "FiBufferedConsoleIO-flush"));
+			hookAdded = true;
+		}
+	}
+	
+	private static synchronized void unregister(FiBufferedConsoleIO io) {
+		open.remove(io);
+	}
+	
+	private static void flushOpen() {
+		ArrayList<FiBufferedConsoleIO> ios;
+		synchronized(FiBufferedConsoleIO.class) {
+			ios = new ArrayList<>(open);
+		}
+		
+		for(FiBufferedConsoleIO io : ios)
+			io.flush();
+	}
+	
+	/**
+	 * Writes out any buffered output, and then reads a line from the console.
+	 * Returns null once the console input has ended.
+	 */
+	@Override
+	public String readLine() {
+		flush();
+		
+		try {
+			return StandardInput.READER.readLine();
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Adds the String to the output buffer.
+	 */
+	@Override
+	public synchronized void print(String s) {
+		encode(CharBuffer.wrap(s));
+	}
+
+	/**
+	 * Adds the String and a line separator to the output buffer.
+	 */
+	@Override
+	public synchronized void println(String s) {
+		encode(CharBuffer.wrap(s));
+		encode(CharBuffer.wrap(System.lineSeparator()));
+	}
+	
+	/**
+	 * Writes everything in the output buffer to the console.
+	 */
+	@Override
+	public synchronized void flush() {
+		buffer.flip();
+		
+		try {
+			while(buffer.hasRemaining())
+				channel.write(buffer);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			buffer.clear();
+		}
+	}
+	
+	/**
+	 * Writes out any buffered output, and lets go of this console IO, so the shutdown hook no longer flushes it.
+	 * The standard input and output are left open, and the console IO can still be used afterwards.
+	 */
+	@Override
+	public void close() {
+		flush();
+		unregister(this);
+	}
+	
+	private void encode(CharBuffer chars) {
+		while(true) {
+			CoderResult result = encoder.encode(chars, buffer, true);
+			
+			if(result.isOverflow()) {
+				flush();
+				continue;
+			}
+			
+			break;
+		}
+		
+		//Each String is encoded on its own
+		encoder.reset();
+	}
+	
+	/**
+	 * The reader of the standard input, created the first time a line is read.
+	 */
+	private static final class StandardInput {
+		
+		static final BufferedReader READER = new BufferedReader(new InputStreamReader(new FileInputStream(FileDescriptor.in), StandardCharsets.UTF_8), 64 * 1024);
+	}
+}
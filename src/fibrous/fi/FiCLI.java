@@ -32,6 +32,18 @@
 package fibrous.fi;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Parses text input, and executes commands accordingly.
@@ -44,10 +56,13 @@ import java.util.ArrayList;
  */
 public class FiCLI {
 	
-	private ArrayList<FiCommand> commands;
+	//Replaced, never changed, so dispatching can read it without locking while commands are being reconfigured
+	private volatile Registry registry = Registry.EMPTY;
+	private final Object registryLock = new Object();
+	
+	private int maxSuggestions = 3;
 	private String listCommandsString = "?";
-	private FiOutputStream oStream;
-	private FiInputStream iStream;
+	private FiSession session;
 	
 	private String exitString = "exit";
 	private String backString = "back";
@@ -57,11 +72,23 @@ public class FiCLI {
 	
 	private boolean canUseExit = true;
 	private boolean canUseBack = false;
+	private boolean canUsePipelines = false;
+	
+	private int pipeCapacity = 256;
 	
 	//Set the default spacing to the default length of back and exit
-	private int spacing = 9;
+	private volatile int spacing = 9;
+	
+	private volatile FiHelpCache helpCache;
+	private int helpPageSize = 0;
 	
 	private String caret = "> ";
+	
+	private volatile Executor executor;
+	
+	private final FiMetrics metrics = new FiMetrics();
+	private final FiResultCache resultCache = new FiResultCache(256);
+	private volatile boolean metricsEnabled = false;
 
 	/**
 	 * Creates a new InputParser with a configurable {@link FiOutputStream} and {@link FiInputStream}.
@@ -70,9 +97,7 @@ public class FiCLI {
 	 * @param listCommandsString What input string should show all of the commands that have been configured.
 	 */
 	public FiCLI(FiInputStream is, FiOutputStream os, String listCommandsString) {
-		commands = new ArrayList<>();
-		iStream = is;
-		oStream = os;
+		session = new FiSession(is, os);
 		this.listCommandsString = listCommandsString;
 	}
 	
@@ -81,11 +106,9 @@ public class FiCLI {
 	 * @param listCommandsString What input string should show all of the commands that have been configured.
 	 */
 	public FiCLI(String listCommandsString) {
-		commands = new ArrayList<>();
 		
 		FiConsoleIO consoleIO = new FiConsoleIO();
-		iStream = consoleIO;
-		oStream = consoleIO;
+		session = new FiSession(consoleIO, consoleIO);
 		
 		this.listCommandsString = listCommandsString;
 	}
@@ -94,14 +117,15 @@ public class FiCLI {
 	 * Creates a new InputParser using the default {@link FiConsoleIO}, and a default listCommndsString of '?'.
 	 */
 	public FiCLI() {
-		commands = new ArrayList<>();
 		FiConsoleIO consoleIO = new FiConsoleIO();
-		iStream = consoleIO;
-		oStream = consoleIO;
+		session = new FiSession(consoleIO, consoleIO);
 	}
 	
 	/**
 	 * Adds a command that will be executed when input matches it's defined syntax.
+	 * Commands can be added while input is being dispatched on other threads.
+	 * The command can be dispatched straight away, but the sorted list of commands is only rebuilt the next time it is needed,
+	 * such as when the commands are listed, so adding many commands one by one doesn't copy the list each time.
 	 * @param command An FiCommand to be added.
 	 */
 	public void addCommand(FiCommand command) {
@@ -109,26 +133,120 @@ public class FiCLI {
 	}
 	
 	/**
-	 * Sets the list of commands through an {@linkplain ArrayList} containing {@link FiCommand} objects.
+	 * Adds many commands at once.
+	 * The commands are sorted a single time and published together, which is much faster than adding them one by one when there are a lot of them.
+	 * @param newCommands The FiCommand objects to be added.
+	 */
+	public void addCommands(Collection<? extends FiCommand> newCommands) {
+		synchronized(registryLock) {
+			Registry r = registry;
+			
+			//The sort is stable, so commands with the same commandString stay in the order they were added
+			ArrayList<FiCommand> list = new ArrayList<>(r.size + newCommands.size());
+			list.addAll(r.getCommands());
+			list.addAll(newCommands);
+			list.sort(Comparator.comparing(c -> c.commandString));
+			
+			publish(list, r.getIndex().with(newCommands), null, newCommands);
+		}
+	}
+	
+	/**
+	 * Adds every command of a table generated by the {@link FiCommandProcessor}.
+	 * The commands were sorted when they were compiled, and if there are no other commands, they are found by the table's own switch,
+	 * so nothing is sorted or indexed when they are added.
+	 * The table's array is copied, so changing it afterwards doesn't change the commands of this FiCLI.
+	 * @param table The FiCompiledCommands of a package that declares commands with {@link FiCommandDef}.
+	 */
+	public void addCommands(FiCommandTable table) {
+		List<FiCommand> added = List.of(table.getCommands());
+		
+		synchronized(registryLock) {
+			if(registry.size == 0)
+				publish(added, null, table, added);
+			else
+				addCommands(added);
+		}
+	}
+	
+	/**
+	 * Adds a command that isn't created until the first time it is executed.
+	 * The commandString and description are listed as usual, but the supplier is only called when the command is first input,
+	 * so commands that are expensive to create, or that load heavy dependencies, cost nothing until they are used.
+	 * @param commandString The String that will launch the command.
+	 * @param description The description that is listed for the command.
+	 * @param supplier Creates the command, with the same commandString. Called at most once.
+	 * @return The placeholder command that was added, which can be used to set isVisible, isAsync, isIndependent, cacheTTL, or schema.
+	 * Until the command is created, those are all that is known about it, and afterwards they are combined with the real command's.
+	 */
+	public FiCommand addCommand(String commandString, String description, Supplier<? extends FiCommand> supplier) {
+		FiLazyCommand command = new FiLazyCommand(commandString, description, supplier);
+		sortAndAddCommand(command);
+		return command;
+	}
+	
+	/**
+	 * Removes a command.
+	 * Only the branch of the index that leads to the command is copied, so this is much faster than replacing every command with setCommands().
+	 * If another command has the same commandString, input goes to that command from now on.
+	 * @param command The FiCommand object to be removed.
+	 * @return False if the command wasn't one of the configured commands.
+	 */
+	public boolean removeCommand(FiCommand command) {
+		synchronized(registryLock) {
+			Registry r = registry;
+			
+			ArrayList<FiCommand> list = new ArrayList<>(r.getCommands());
+			if(!list.remove(command))
+				return false;
+			
+			FiCommandIndex index = r.getIndex().without(command);
+			
+			//A command that was hidden behind the removed one can be found now
+			for(FiCommand c : list) {
+				if(c.commandString.equals(command.commandString)) {
+					index = index.with(List.of(c));
+					break;
+				}
+			}
+			
+			publish(list, index, null, List.of());
+			return true;
+		}
+	}
+	
+	/**
+	 * Replaces every command with the {@link FiCommand} objects in an {@linkplain ArrayList}.
+	 * The list is copied, so changing it afterwards has no effect.
+	 * Input that is being dispatched while the commands are replaced sees either all of the old commands or all of the new ones.
 	 * @param commands An ArrayList containing FiCommand objects
 	 */
 	public void setCommands(ArrayList<FiCommand> commands) {
-		this.commands = commands;
+		ArrayList<FiCommand> list = new ArrayList<>(commands);
+		list.sort(Comparator.comparing(c -> c.commandString));
+		
+		synchronized(registryLock) {
+			publish(list, new FiCommandIndex().with(list), null, list);
+		}
 	}
 	
 	/**
 	 * Returns an ArrayList containing all of the currently configured {@link FiCommand} objects.
+	 * The list is a copy, so commands should be added or removed through this FiCLI rather than through the returned list.
 	 * @return An ArrayList containing all of the currently configured FiCommand objects.
 	 */
 	public ArrayList<FiCommand> getCommands() {
-		return commands;
+		return new ArrayList<>(registry.getCommands());
 	}
 	
 	/**
 	 * Removes all commands.
 	 */
 	public void clearCommands() {
-		commands.clear();
+		synchronized(registryLock) {
+			registry = Registry.EMPTY;
+			helpCache = null;
+		}
 	}
 	
 	/**
@@ -141,6 +259,7 @@ public class FiCLI {
 	public void setExitString(String s) {
 		exitString = s;
 		canUseExit = true;
+		helpCache = null;
 		
 		//Ensure our description spacing is correct
 		if(exitString.length() + 5 > spacing)
@@ -158,6 +277,7 @@ public class FiCLI {
 	public void setBackString(String s) {
 		backString = s;
 		canUseBack = true;
+		helpCache = null;
 		
 		//Ensure our description spacing is correct
 		if(backString.length() + 5 > spacing)
@@ -172,6 +292,56 @@ public class FiCLI {
 	public void allowAdditionalStates(boolean exit, boolean back) {
 		canUseExit = exit;
 		canUseBack = back;
+		helpCache = null;
+	}
+	
+	/**
+	 * Determines if commands can be chained together with '|', such as "list | filter x".
+	 * Every line written by a command is passed on to the next command in the pipeline, which reads it from {@link FiContext#getInputStream()}.
+	 * All commands in a pipeline run at the same time, with every command except the last running on a thread of its own.
+	 * Those threads don't come from the executor given to setExecutor(), since a command waiting for the next one to read
+	 * would hold up the commands queued behind it on a bounded executor, and the pipeline would never finish.
+	 * When a command stops reading early, the commands before it are stopped at their next write.
+	 * This is off by default, since it changes the meaning of '|' in arguments.
+	 * @param b
+	 */
+	public void allowPipelines(boolean b) {
+		canUsePipelines = b;
+	}
+	
+	/**
+	 * Sets how many lines may be waiting between two commands of a pipeline before the first command has to wait.
+	 * @param lines
+	 */
+	public void setPipeCapacity(int lines) {
+		pipeCapacity = lines;
+	}
+	
+	/**
+	 * Sets how many commands are listed at a time when the listCommandsString is input.
+	 * Further pages are listed by following the listCommandsString with a page number, such as "? 2".
+	 * Set to 0, the default, to list every command at once.
+	 * @param commands
+	 */
+	public void setHelpPageSize(int commands) {
+		helpPageSize = commands;
+	}
+	
+	/**
+	 * Renders the list of commands again the next time it is shown.
+	 * The list is kept until commands are added or removed, so call this after changing the commandDescription or isVisible of a command that has already been added.
+	 */
+	public void refreshHelp() {
+		helpCache = null;
+	}
+	
+	/**
+	 * Sets how many of the closest commands are suggested in {@link FiState#suggestions} when the input is invalid.
+	 * The default is 3. Set to 0 to turn suggestions off.
+	 * @param max
+	 */
+	public void setMaxSuggestions(int max) {
+		maxSuggestions = max;
 	}
 	
 	/**
@@ -180,6 +350,7 @@ public class FiCLI {
 	 */
 	public void setExitDescription(String desc) {
 		exitDescription = desc;
+		helpCache = null;
 	}
 	
 	/**
@@ -188,6 +359,7 @@ public class FiCLI {
 	 */
 	public void setBackDescription(String desc) {
 		backDescription = desc;
+		helpCache = null;
 	}
 	
 	/**
@@ -210,7 +382,9 @@ public class FiCLI {
 	 * Manually prints the caret to the configured OutputStream.
 	 */
 	public void printCaret() {
-		oStream.print(caret);
+		FiOutputStream os = session.getOutputStream();
+		os.print(caret);
+		os.flush();
 	}
 	
 	/**
@@ -218,7 +392,7 @@ public class FiCLI {
 	 * @param fis
 	 */
 	public void setInput(FiInputStream fis) {
-		iStream = fis;
+		session.setInput(fis);
 	}
 	
 	/**
@@ -226,7 +400,7 @@ public class FiCLI {
 	 * @param fos
 	 */
 	public void setOutput(FiOutputStream fos) {
-		oStream = fos;
+		session.setOutput(fos);
 	}
 	
 	/**
@@ -237,43 +411,451 @@ public class FiCLI {
 	 * @return An {@link FiState} object representing what happened with regards to the command that was input.
 	 */
 	public FiState processCommand() {
+		return processCommand(session);
+	}
+	
+	/**
+	 * Outputs the caret to the given {@link FiSession}, waits for input from it, and reacts accordingly.
+	 * If the input has ended, the EXIT state is returned.
+	 * Many sessions can be processed by different threads at the same time, even while commands are being added or removed.
+	 * @param session The session to read input from and write output to.
+	 * @return An {@link FiState} object representing what happened with regards to the command that was input.
+	 */
+	public FiState processCommand(FiSession session) {
+		
+		FiOutputStream os = session.getOutputStream();
+		os.print(getCaret(session));
+		os.flush();
+		
+		String commandString = session.getInputStream().readLine();
+		
+		return processCommand(commandString, session);
+	}
+	
+	/**
+	 * Outputs the caret to the given {@link FiSession}, and waits no longer than the timeout for a line of input before reacting to it.
+	 * The caret is only printed once per line, so this can be called over and over from an event loop until a line arrives.
+	 * If the session's input isn't an {@link FiPollableInputStream}, such as an {@link FiChannelInput}, this waits for a line as processCommand() does.
+	 * @param session The session to read input from and write output to.
+	 * @param timeout How long to wait for a line. 0 only processes a line that has already arrived.
+	 * @param unit
+	 * @return An {@link FiState} object representing what happened, which is NO_INPUT if no line arrived in time, or EXIT if the input has ended.
+	 */
+	public FiState processCommand(FiSession session, long timeout, TimeUnit unit) {
 		
-		oStream.print(caret);
+		if(!session.isWaitingForInput) {
+			FiOutputStream os = session.getOutputStream();
+			os.print(getCaret(session));
+			os.flush();
+			session.isWaitingForInput = true;
+		}
 		
-		String commandString = iStream.readLine();
+		FiInputStream is = session.getInputStream();
+		boolean pollable = is instanceof FiPollableInputStream;
+		String commandString = pollable ? ((FiPollableInputStream) is).readLine(timeout, unit) : is.readLine();
+		
+		if(commandString == null) {
+			//A pollable input that hasn't ended just has nothing yet
+			if(pollable && !((FiPollableInputStream) is).isAtEnd())
+				return new FiState(FiState.NO_INPUT, null);
+			
+			session.isWaitingForInput = false;
+			return new FiState(FiState.EXIT, null);
+		}
+		
+		session.isWaitingForInput = false;
+		return processCommand(commandString, session);
+	}
+	
+	/**
+	 * Processes a line of input that you already have, such as from a message queue or a request body.
+	 * Nothing is read, and no caret is printed, so the only output is whatever the command itself writes to this FiCLI's output.
+	 * @param commandString The line of input.
+	 * @return An {@link FiState} object representing what happened with regards to the command that was input.
+	 */
+	public FiState process(String commandString) {
+		return processCommand(commandString, session);
+	}
+	
+	/**
+	 * Attempts to match a line of input against a stored command or other special command, without printing the caret or reading any input.
+	 * Each matching command is executed with its own {@link FiContext}, so this may be called by many threads at the same time.
+	 * @param commandString The line of input, or null if the input has ended, which returns the EXIT state.
+	 * @param session The session that the input came from, and that output should go to.
+	 * @return An {@link FiState} object representing what happened with regards to the command that was input.
+	 */
+	public FiState processCommand(String commandString, FiSession session) {
+		if(commandString == null)
+			return new FiState(FiState.EXIT, null);
+		
+		FiState result = new FiState(FiState.VALID, commandString);
+		result.state = dispatch(commandString, session, result, null, true);
+		return result;
+	}
+	
+	/**
+	 * Matches a line of input and executes it, returning only the state so that callers processing many lines don't need an {@link FiState} for each one.
+	 * @param commandString
+	 * @param session
+	 * @param result Where an explanation of the state is stored, or null if it isn't needed.
+	 * @param reuse A context to fill in instead of creating a new one, or null.
+	 * @param suggest Whether the closest commands should be found for invalid input, which is much slower than finding that it is invalid.
+	 * @return One of the FiState state values.
+	 */
+	int dispatch(String commandString, FiSession session, FiState result, FiContext reuse, boolean suggest) {
+		
+		//Input from a session that is in a menu belongs to that menu
+		FiCLI target = route(session);
+		int state = target.dispatchLine(commandString, session, result, reuse, suggest);
+		
+		//The back string takes the session out of the menu it is in
+		if(state == FiState.BACK)
+			session.leaveMenu(target);
+		
+		if(target.metricsEnabled)
+			target.metrics.record(state);
+		
+		return state;
+	}
+	
+	/**
+	 * Returns the FiCLI that input from the session should go to, which is the menu the session is in, if any.
+	 */
+	FiCLI route(FiSession session) {
+		FiMenu menu = session.getMenu();
+		return menu == null ? this : menu.getCLI();
+	}
+	
+	/**
+	 * Returns the caret that should be shown to a session.
+	 * That is the session's own caret if it has one, or else the caret of the menu the session is in.
+	 * @param session
+	 * @return
+	 */
+	String getCaret(FiSession session) {
+		String sessionCaret = session.getCaret();
+		return sessionCaret == null ? route(session).caret : sessionCaret;
+	}
+	
+	/**
+	 * Finds the ways a partial line of input could be completed, for tab completion.
+	 * If the input is the start of one or more command strings, those are the candidates.
+	 * Otherwise, if the input starts with a command that has a {@link FiSchema}, the candidates are the flags or allowed values that fit the last argument.
+	 * Commands are found by a binary search over the sorted list of commands, so this stays fast no matter how many commands there are.
+	 * @param line The input so far.
+	 * @param session The session the input is from, so the commands of the menu it is in are used.
+	 * @param limit The most candidates to return.
+	 * @return
+	 */
+	public FiCompletion complete(String line, FiSession session, int limit) {
+		return route(session).completeLine(line, 0, limit);
+	}
+	
+	private FiCompletion completeLine(String line, int offset, int limit) {
+		Registry r = registry;
+		List<FiCommand> commands = r.getCommands();
+		
+		ArrayList<String> candidates = new ArrayList<>();
+		String first = null;
+		String last = null;
+		
+		if(canUseExit && exitString.startsWith(line)) {
+			candidates.add(exitString);
+			first = last = exitString;
+		}
+		
+		if(canUseBack && backString.startsWith(line)) {
+			candidates.add(backString);
+			first = first == null ? backString : first;
+			last = backString;
+		}
+		
+		//Every command that starts with the input is in one range of the sorted list
+		int low = 0;
+		int high = commands.size();
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(commands.get(mid).commandString.compareTo(line) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		
+		int end = low;
+		high = commands.size();
+		while(end < high) {
+			int mid = (end + high) >>> 1;
+			if(commands.get(mid).commandString.startsWith(line))
+				end = mid + 1;
+			else
+				high = mid;
+		}
+		
+		boolean hasMore = false;
+		String previous = null;
+		
+		for(int i = low; i < end; i++) {
+			FiCommand c = commands.get(i);
+			if(!c.isVisible || c.commandString.equals(previous))
+				continue;
+			
+			if(candidates.size() == limit) {
+				hasMore = true;
+				break;
+			}
+			
+			candidates.add(c.commandString);
+			previous = c.commandString;
+			first = first == null ? previous : first;
+		}
+		
+		//The candidates that weren't returned all sort before the last visible command of the range
+		for(int i = end - 1; i >= low; i--) {
+			if(commands.get(i).isVisible) {
+				last = commands.get(i).commandString;
+				break;
+			}
+		}
+		
+		if(!candidates.isEmpty()) {
+			String common = first.substring(0, FiCompletion.commonLength(first, last));
+			for(String c : candidates)
+				common = common.substring(0, FiCompletion.commonLength(common, c));
+			
+			return new FiCompletion(offset, candidates, common, hasMore);
+		}
+		
+		//Otherwise the input may be a command followed by arguments
+		//A command that hasn't been created yet isn't created just to complete its arguments, so its placeholder is used until it is
+		FiCommand command = r.find(line);
+		if(command instanceof FiLazyCommand && ((FiLazyCommand) command).getCreated() != null)
+			command = ((FiLazyCommand) command).getCreated();
+		if(command == null)
+			return new FiCompletion(offset + line.length(), candidates, "", false);
+		
+		int commandEnd = command.commandString.length();
+		
+		if(command instanceof FiMenu) {
+			int start = commandEnd;
+			while(start < line.length() && line.charAt(start) == ' ')
+				start++;
+			
+			return ((FiMenu) command).getCLI().completeLine(line.substring(start), offset + start, limit);
+		}
+		
+		int start = Math.max(line.lastIndexOf(' ') + 1, commandEnd);
+		String token = line.substring(start);
+		
+		//The schema of a placeholder is whatever was set on it, since getSchema() would create the command
+		FiSchema schema = command instanceof FiLazyCommand ? command.schema : command.getSchema();
+		if(schema != null) {
+			FiArguments previousArguments = new FiArguments();
+			FiTokenizer.tokenize(line.subSequence(0, start), commandEnd, previousArguments);
+			schema.complete(previousArguments, token, candidates);
+		}
+		
+		hasMore = candidates.size() > limit;
+		String common = candidates.isEmpty() ? "" : candidates.get(0);
+		for(String c : candidates)
+			common = common.substring(0, FiCompletion.commonLength(common, c));
+		
+		return new FiCompletion(offset + start, hasMore ? new ArrayList<>(candidates.subList(0, limit)) : candidates, common, hasMore);
+	}
+	
+	int dispatchLine(String commandString, FiSession session, FiState result, FiContext reuse, boolean suggest) {
 		
 		//Check for the string that should list the commands
-		if(commandString.compareTo(listCommandsString) == 0) {
-			listCommands();
-			return new FiState(FiState.VALID, commandString);
+		if(isListCommand(commandString)) {
+			listCommands(commandString, session.getOutputStream());
+			return FiState.VALID;
 		}
 		
 		//Check for the string that should generally exit the application, if allowed
 		if(canUseExit && commandString.compareTo(exitString) == 0)
-			return new FiState(FiState.EXIT, commandString);
+			return FiState.EXIT;
 		
 		//Check for the string that should generally exit this parser, if allowed
 		if(canUseBack && commandString.compareTo(backString) == 0)
-			return new FiState(FiState.BACK, commandString);
+			return FiState.BACK;
 		
-		for(int i = 0; i < commands.size(); i++) {
-			FiCommand command = commands.get(i);
+		//Check for commands that are chained together
+		if(canUsePipelines && commandString.indexOf('|') >= 0) {
+			List<String> stages = FiTokenizer.splitPipeline(commandString);
+			if(stages.size() > 1)
+				return dispatchPipeline(stages, session, result);
+		}
+		
+		//Find the longest matching command string without scanning every command
+		Registry r = registry;
+		FiCommand command = FiLazyCommand.resolve(r.find(commandString));
+		
+		//Menus either take over the session, or pass the rest of the line on to one of their own commands
+		if(command instanceof FiMenu)
+			return ((FiMenu) command).dispatch(commandString, session, result, reuse, suggest);
+		
+		if(command != null) {
+			FiContext context = createContext(command, commandString, session, session.getInputStream(), session.getOutputStream(), result, reuse);
+			if(context == null)
+				return FiState.INVALID_ARGUMENTS;
 			
-			if(command.isCommand(commandString)) {
-				command.execute();
-				return new FiState(FiState.VALID, commandString);
-			}
+			executeCommand(context);
+			return FiState.VALID;
 		}
 		
+		//Suggest the closest commands, so callers can say more than that the input was invalid
+		if(suggest && result != null && maxSuggestions > 0)
+			result.suggestions = r.getIndex().suggest(commandString, maxSuggestions);
+		
 		//Returns false to allow for extensive error handling.
-		return new FiState(FiState.INVALID, commandString);
+		return FiState.INVALID;
+	}
+	
+	/**
+	 * Outputs the caret and waits for input in the same way as processCommand(), but doesn't wait for the command to finish.
+	 * Commands marked with {@link FiCommand#isAsync} are executed on the configured executor, and everything else is executed immediately.
+	 * @return A future that completes with an {@link FiState} once the command has finished.
+	 */
+	public CompletableFuture<FiState> processCommandAsync() {
+		return processCommandAsync(session);
+	}
+	
+	/**
+	 * Outputs the caret to the given {@link FiSession}, waits for input from it, and then dispatches the input without waiting for the command to finish.
+	 * @param session The session to read input from and write output to.
+	 * @return A future that completes with an {@link FiState} once the command has finished.
+	 */
+	public CompletableFuture<FiState> processCommandAsync(FiSession session) {
+		
+		FiOutputStream os = session.getOutputStream();
+		os.print(getCaret(session));
+		os.flush();
+		
+		String commandString = session.getInputStream().readLine();
+		
+		return processCommandAsync(commandString, session);
+	}
+	
+	/**
+	 * Dispatches a line of input without waiting for the command to finish.
+	 * A command marked with {@link FiCommand#isAsync} is executed on the configured executor.
+	 * Its output is collected while it runs and then written to the session's output in one piece,
+	 * so the output of commands that finish at the same time is never interleaved.
+	 * Anything else, including the special commands, is processed immediately and returned as an already completed future.
+	 * If the command throws an exception, the future completes exceptionally.
+	 * @param commandString The line of input, or null if the input has ended, which completes with the EXIT state.
+	 * @param session The session that the input came from, and that output should go to.
+	 * @return A future that completes with an {@link FiState} once the command has finished.
+	 */
+	public CompletableFuture<FiState> processCommandAsync(String commandString, FiSession session) {
+		if(commandString == null)
+			return CompletableFuture.completedFuture(new FiState(FiState.EXIT, null));
+		
+		//Input from a session that is in a menu belongs to that menu
+		FiCLI target = route(session);
+		if(target != this)
+			return target.processCommandAsync(commandString, session);
+		
+		FiCommand command = isSpecialCommand(commandString) ? null : FiLazyCommand.resolve(registry.find(commandString));
+		
+		if(command == null || !command.isAsync)
+			return CompletableFuture.completedFuture(processCommand(commandString, session));
+		
+		FiCaptureStream buffer = new FiCaptureStream();
+		FiState result = new FiState(FiState.VALID, commandString);
+		FiContext context = createContext(command, commandString, session, session.getInputStream(), buffer, result, null);
+		
+		if(context == null) {
+			result.state = FiState.INVALID_ARGUMENTS;
+			if(metricsEnabled)
+				metrics.record(FiState.INVALID_ARGUMENTS);
+			return CompletableFuture.completedFuture(result);
+		}
+		
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				executeCommand(context);
+			} finally {
+				//Hand over the output in one piece, even if the command failed part of the way through
+				FiOutputStream os = session.getOutputStream();
+				synchronized(os) {
+					buffer.writeTo(os);
+				}
+			}
+			
+			if(metricsEnabled)
+				metrics.record(FiState.VALID);
+			
+			return new FiState(FiState.VALID, commandString);
+		}, getExecutor());
+	}
+	
+	/**
+	 * Sets the {@link Executor} that asynchronous commands are executed on.
+	 * If one isn't set, virtual threads are used when the Java runtime supports them, and a pool of daemon threads is used otherwise.
+	 * The commands of a pipeline always run on the default threads, so a bounded executor can't stop a pipeline from finishing.
+	 * @param e
+	 */
+	public void setExecutor(Executor e) {
+		executor = e;
+	}
+	
+	/**
+	 * Returns the {@link Executor} that asynchronous commands are executed on.
+	 * @return
+	 */
+	public Executor getExecutor() {
+		Executor e = executor;
+		return e == null ? DefaultExecutor.INSTANCE : e;
+	}
+	
+	/**
+	 * Determines if the number of invocations and the execution time of every command are recorded.
+	 * Metrics are off by default.
+	 * @param b
+	 */
+	public void setMetricsEnabled(boolean b) {
+		metricsEnabled = b;
+	}
+	
+	/**
+	 * Returns true if metrics are being recorded.
+	 * @return
+	 */
+	public boolean isMetricsEnabled() {
+		return metricsEnabled;
+	}
+	
+	/**
+	 * Returns the {@link FiMetrics} of this FiCLI, which can be used to take snapshots of the recorded metrics.
+	 * @return
+	 */
+	public FiMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Returns the {@link FiResultCache} that holds the output of commands marked with {@link FiCommand#cacheTTL}.
+	 * It can be used to invalidate results, resize the cache, or see how often it was used.
+	 * @return
+	 */
+	public FiResultCache getResultCache() {
+		return resultCache;
+	}
+	
+	/**
+	 * Returns the {@link FiSession} used by processCommand() when no other session is given.
+	 * It uses the input, output, and caret configured on this FiCLI.
+	 * @return
+	 */
+	public FiSession getSession() {
+		return session;
 	}
 	
 	/**
 	 * Returns the number of currently configured commands.
 	 */
 	public int numOfCommands() {
-		return commands.size();
+		return registry.size;
 	}
 	
 	/**
@@ -288,7 +870,7 @@ public class FiCLI {
 	 * @return
 	 */
 	public FiInputStream getInputStream() {
-		return iStream;
+		return session.getInputStream();
 	}
 	
 	/**
@@ -296,69 +878,469 @@ public class FiCLI {
 	 * @return
 	 */
 	public FiOutputStream getOutputStream() {
-		return oStream;
+		return session.getOutputStream();
+	}
+	
+	/**
+	 * Returns true if the input is the listCommandsString, optionally followed by a filter pattern and a page number.
+	 */
+	private boolean isListCommand(String commandString) {
+		if(!commandString.startsWith(listCommandsString))
+			return false;
+		
+		return commandString.length() == listCommandsString.length() || commandString.charAt(listCommandsString.length()) == ' ';
 	}
 	
 	/**
 	 * Lists all configured commands, plus additional, special commands, if allowed.
+	 * The listCommandsString may be followed by a pattern, such as "? get*", to only list matching commands,
+	 * and by a page number when the list is split into pages.
+	 * The pattern is the rest of the line before the page number, so it can contain spaces, such as "? get record*".
+	 * The list is rendered once and reused until the commands change.
 	 */
-	private void listCommands() {
-		oStream.println("\nAvailable Commands:");
+	private void listCommands(String commandString, FiOutputStream oStream) {
+		String pattern = null;
+		int page = 1;
+		
+		FiArguments args = new FiArguments();
+		FiTokenizer.tokenize(commandString, listCommandsString.length(), args);
+		int count = args.size();
+		
+		//A number at the end is the page
+		if(count > 0) {
+			try {
+				page = Integer.parseInt(args.get(count - 1));
+				count--;
+			} catch(NumberFormatException e) {
+			}
+		}
+		
+		if(count > 0) {
+			StringBuilder sb = new StringBuilder(args.get(0));
+			for(int i = 1; i < count; i++)
+				sb.append(' ').append(args.get(i));
+			
+			pattern = sb.toString();
+		}
+		
+		getHelpCache().list(oStream, pattern, page, helpPageSize, listCommandsString);
+	}
+	
+	/**
+	 * Returns the rendered list of commands, rendering it again only if something has changed.
+	 */
+	private FiHelpCache getHelpCache() {
+		Registry r = registry;
+		FiHelpCache cache = helpCache;
+		if(cache != null && cache.isCurrent(r))
+			return cache;
+		
+		ArrayList<String> names = new ArrayList<>(2);
+		ArrayList<String> descriptions = new ArrayList<>(2);
 		
 		if(canUseExit) {
-			oStream.println(exitString + addSpaces(exitString) + exitDescription);
+			names.add(exitString);
+			descriptions.add(exitDescription);
 		}
 		
 		if(canUseBack) {
-			oStream.println(backString + addSpaces(backString) + backDescription);
+			names.add(backString);
+			descriptions.add(backDescription);
+		}
+		
+		cache = FiHelpCache.build(names.toArray(new String[0]), descriptions.toArray(new String[0]), r.getCommands(), spacing, r);
+		helpCache = cache;
+		
+		return cache;
+	}
+	
+	/**
+	 * Executes a command, timing it if metrics are enabled.
+	 * A command that throws is counted as an error rather than as VALID.
+	 */
+	void executeCommand(FiContext context) {
+		FiCommand command = context.getCommand();
+		
+		if(!metricsEnabled) {
+			executeOrReplay(context);
+			return;
+		}
+		
+		long start = System.nanoTime();
+		boolean finished = false;
+		boolean replayed = false;
+		try {
+			replayed = executeOrReplay(context);
+			finished = true;
+		} finally {
+			//Writing kept output says nothing about how long the command takes, so it is counted apart from the execution times
+			if(replayed)
+				metrics.recordCacheHit(command);
+			else if(finished)
+				metrics.record(command, FiState.VALID, System.nanoTime() - start);
+			else
+				metrics.recordError(command, System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Executes a command, or writes its cached output if it is cacheable and has been run with the same arguments before.
+	 * Commands in a pipeline are always executed, since their output can depend on the command before them.
+	 * @return Whether the kept output was written instead of executing the command.
+	 */
+	private boolean executeOrReplay(FiContext context) {
+		FiCommand command = context.getCommand();
+		long ttl = command.cacheTTL;
+		
+		if(ttl <= 0 || resultCache.getMaxSize() == 0 || context.getInputStream() instanceof FiPipe || context.getOutputStream() instanceof FiPipe) {
+			command.execute(context);
+			return false;
+		}
+		
+		String key = FiResultCache.key(command, context.getArguments());
+		long now = System.nanoTime();
+		
+		FiResultCache.Output output = resultCache.get(key, now);
+		if(output != null) {
+			output.writeTo(context.getOutputStream());
+			return true;
+		}
+		
+		//Only a run that finishes normally is cached
+		FiResultCache.Recorder recorder = new FiResultCache.Recorder(context.getOutputStream());
+		command.execute(new FiContext(command, context.getInput(), context.getArguments(), context.getOptions(), context.getSession(), context.getInputStream(), recorder));
+		resultCache.put(key, command, recorder.getCopy(), now + TimeUnit.MILLISECONDS.toNanos(ttl));
+		return false;
+	}
+	
+	/**
+	 * Returns the command that a line would run, if it is marked as independent and the line can be run at the same time as its neighbors.
+	 * Special commands, pipelines, and menus never are.
+	 * @param commandString
+	 * @return The command, or null if the line has to be processed on its own.
+	 */
+	FiCommand findIndependent(String commandString) {
+		if(isSpecialCommand(commandString) || (canUsePipelines && commandString.indexOf('|') >= 0))
+			return null;
+		
+		FiCommand command = FiLazyCommand.resolve(registry.find(commandString));
+		return command != null && command.isIndependent && !(command instanceof FiMenu) ? command : null;
+	}
+	
+	/**
+	 * Prepares an independent command to be executed later, writing to the given output.
+	 * @param command
+	 * @param commandString
+	 * @param session
+	 * @param os
+	 * @param result Where the reason the arguments are invalid is stored.
+	 * @return The context to execute, or null if the arguments are invalid.
+	 */
+	FiContext prepareIndependent(FiCommand command, String commandString, FiSession session, FiOutputStream os, FiState result) {
+		FiContext context = createContext(command, commandString, session, session.getInputStream(), os, result, null);
+		if(context == null)
+			recordState(FiState.INVALID_ARGUMENTS);
+		
+		return context;
+	}
+	
+	/**
+	 * Counts a state in the metrics, for input that wasn't processed through dispatch().
+	 */
+	void recordState(int state) {
+		if(metricsEnabled)
+			metrics.record(state);
+	}
+	
+	private boolean isSpecialCommand(String commandString) {
+		return isListCommand(commandString)
+				|| (canUseExit && commandString.compareTo(exitString) == 0)
+				|| (canUseBack && commandString.compareTo(backString) == 0);
+	}
+	
+	/**
+	 * Creates the context for a single invocation of a command.
+	 * Every invocation gets its own arguments, so nothing is shared between threads.
+	 * If the command has a {@link FiSchema}, the arguments are converted, and null is returned if they don't fit it.
+	 * @param result Where the reason the arguments don't fit is stored, or null if it isn't needed.
+	 * @param reuse A context to fill in instead of creating a new one, or null.
+	 */
+	private FiContext createContext(FiCommand command, String commandString, FiSession session, FiInputStream is, FiOutputStream os, FiState result, FiContext reuse) {
+		FiArguments arguments = reuse == null ? new FiArguments() : reuse.getArguments();
+		FiTokenizer.tokenize(commandString, command.commandString.length(), arguments);
+		
+		FiOptions options = null;
+		FiSchema schema = command.getSchema();
+		
+		if(schema != null) {
+			options = reuse == null ? new FiOptions() : reuse.reusableOptions;
+			String error = schema.parse(arguments, options);
+			
+			if(error != null) {
+				if(result != null)
+					result.message = error;
+				if(metricsEnabled)
+					metrics.record(command, FiState.INVALID_ARGUMENTS);
+				return null;
+			}
+		}
+		
+		if(reuse != null) {
+			reuse.reuse(command, commandString, options, session, is, os);
+			return reuse;
+		}
+		
+		return new FiContext(command, commandString, arguments, options, session, is, os);
+	}
+	
+	/**
+	 * Runs every command of a pipeline at the same time, connected by {@link FiPipe} objects.
+	 * The last command runs on this thread and writes to the session, so this returns once the whole pipeline has finished.
+	 * @param stages
+	 * @param session
+	 * @return
+	 */
+	private int dispatchPipeline(List<String> stages, FiSession session, FiState result) {
+		int n = stages.size();
+		
+		//Don't start anything unless every command in the pipeline exists
+		Registry r = registry;
+		FiCommand[] stageCommands = new FiCommand[n];
+		for(int i = 0; i < n; i++) {
+			stageCommands[i] = FiLazyCommand.resolve(r.find(stages.get(i)));
+			if(stageCommands[i] == null)
+				return FiState.INVALID;
 		}
 		
-		for(int i = 0; i < numOfCommands(); i++) {
+		FiPipe[] pipes = new FiPipe[n - 1];
+		for(int i = 0; i < pipes.length; i++)
+			pipes[i] = new FiPipe(pipeCapacity);
+		
+		//Or unless every command's arguments are valid
+		FiContext[] contexts = new FiContext[n];
+		for(int i = 0; i < n; i++) {
+			FiInputStream input = i == 0 ? session.getInputStream() : pipes[i - 1];
+			FiOutputStream output = i == n - 1 ? session.getOutputStream() : pipes[i];
 			
-			//Check if the command should be visible or not.
-			//If a command isn't visible, it won't be listed,
-			//but it can still be executed.
-			if(!getCommands().get(i).isVisible)
-				continue;
+			contexts[i] = createContext(stageCommands[i], stages.get(i), session, input, output, result, null);
+			if(contexts[i] == null)
+				return FiState.INVALID_ARGUMENTS;
+		}
+		
+		CompletableFuture<?>[] producers = new CompletableFuture<?>[n - 1];
+		for(int i = 0; i < producers.length; i++) {
+			FiPipe input = i == 0 ? null : pipes[i - 1];
+			FiPipe output = pipes[i];
+			FiContext context = contexts[i];
 			
-			oStream.println(getCommands().get(i).commandString + addSpaces(getCommands().get(i).commandString) + getCommands().get(i).commandDescription);
+			//Every stage has to be running for the pipeline to finish, so a bounded executor can't be used
+			producers[i] = CompletableFuture.runAsync(() -> runStage(context, input, output), DefaultExecutor.INSTANCE);
+		}
+		
+		runStage(contexts[n - 1], pipes[n - 2], null);
+		
+		//Report the first failure of an earlier command
+		for(CompletableFuture<?> producer : producers) {
+			try {
+				producer.join();
+			} catch(CompletionException e) {
+				if(e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				if(e.getCause() instanceof Error)
+					throw (Error) e.getCause();
+				throw e;
+			}
+		}
+		
+		return FiState.VALID;
+	}
+	
+	/**
+	 * Executes one command of a pipeline.
+	 * When it finishes, the next command is told there is no more input, and the previous command is told to stop.
+	 */
+	private void runStage(FiContext context, FiPipe input, FiPipe output) {
+		try {
+			executeCommand(context);
+		} catch(CancellationException e) {
+			//Being stopped by the next command isn't an error
+			if(output == null || !output.isCancelled())
+				throw e;
+		} finally {
+			if(output != null)
+				output.close();
+			if(input != null)
+				input.cancel();
 		}
 	}
 	
 	/**
-	 * Adds commands in alphabetical order.
+	 * Adds a command to the index straight away, and to the sorted list of commands the next time the list is needed.
 	 * @param c
 	 */
 	private void sortAndAddCommand(FiCommand c) {
+		synchronized(registryLock) {
+			Registry r = registry;
+			updateSpacing(List.of(c));
+			
+			registry = r.with(c, r.getIndex().with(List.of(c)));
+			helpCache = null;
+		}
+	}
+	
+	/**
+	 * Replaces the registry with a new one, so input dispatched from now on finds the new commands.
+	 * Must be called while holding the registryLock.
+	 * @param commands The new list of commands, in alphabetical order. It isn't changed after this.
+	 * @param index The index of the new commands, or null if they are all in the table.
+	 * @param table The compiled table that holds every one of the new commands, or null.
+	 * @param added The commands that weren't in the old registry.
+	 */
+	private void publish(List<FiCommand> commands, FiCommandIndex index, FiCommandTable table, Collection<? extends FiCommand> added) {
+		updateSpacing(added);
+		registry = new Registry(Collections.unmodifiableList(commands), index, table);
+		helpCache = null;
+	}
+	
+	/**
+	 * Sets the maximum spacing to make all of the command descriptions line up.
+	 */
+	private void updateSpacing(Collection<? extends FiCommand> added) {
+		for(FiCommand c : added) {
+			if(c.commandString.length() + 5 > spacing)
+				spacing = c.commandString.length() + 5;
+		}
+	}
+	
+	/**
+	 * The commands of an FiCLI, and the index used to find them.
+	 * A registry is never changed, so it can be read by any thread. Changing the commands publishes a new one.
+	 * When every command came from an {@link FiCommandTable}, commands are found by the table,
+	 * and the index is only built if it is needed for suggestions, completion, or adding more commands.
+	 * Commands added one at a time are only in the index at first, and are merged into the sorted list the first time it is read.
+	 */
+	private static final class Registry {
+		
+		static final Registry EMPTY = new Registry(Collections.emptyList(), new FiCommandIndex(), null);
+		
+		final int size;
+		final FiCommandTable table;
+		private volatile FiCommandIndex index;
+		
+		//The sorted commands, or null until the added commands have been merged into the base list
+		private volatile List<FiCommand> commands;
+		private final List<FiCommand> base;
+		private final Added added;
+		
+		Registry(List<FiCommand> commands, FiCommandIndex index, FiCommandTable table) {
+			this(commands, null, index, table);
+		}
+		
+		private Registry(List<FiCommand> base, Added added, FiCommandIndex index, FiCommandTable table) {
+			this.base = base;
+			this.added = added;
+			this.index = index;
+			this.table = table;
+			size = base.size() + (added == null ? 0 : added.count);
+			commands = added == null ? base : null;
+		}
 		
-		//Set the maximum spacing to make all of the command descriptions line up.
-		if(c.commandString.length() + 5 > spacing)
-			spacing = c.commandString.length() + 5;
+		/**
+		 * Returns a registry with one more command, without copying the sorted list.
+		 */
+		Registry with(FiCommand c, FiCommandIndex newIndex) {
+			List<FiCommand> sorted = commands;
+			if(sorted != null)
+				return new Registry(sorted, new Added(c, null), newIndex, null);
+			
+			return new Registry(base, new Added(c, added), newIndex, null);
+		}
 		
-		for(int i = 0; i < commands.size(); i++) {
-			if(c.commandString.compareTo(commands.get(i).commandString) < 0) {
-				commands.add(i, c);
-				return;
+		/**
+		 * Returns every command in alphabetical order, merging in the commands added since the list was last read.
+		 */
+		List<FiCommand> getCommands() {
+			List<FiCommand> sorted = commands;
+			if(sorted != null)
+				return sorted;
+			
+			//Merging on more than one thread at a time gives the same list, so it doesn't matter which one is kept
+			FiCommand[] newer = new FiCommand[added.count];
+			for(Added a = added; a != null; a = a.previous)
+				newer[a.count - 1] = a.command;
+			
+			//The sort is stable, and older commands go first, so commands with the same commandString stay in the order they were added
+			Arrays.sort(newer, Comparator.comparing(c -> c.commandString));
+			
+			ArrayList<FiCommand> list = new ArrayList<>(size);
+			int i = 0;
+			int j = 0;
+			while(i < base.size() && j < newer.length) {
+				if(base.get(i).commandString.compareTo(newer[j].commandString) <= 0)
+					list.add(base.get(i++));
+				else
+					list.add(newer[j++]);
 			}
+			
+			list.addAll(base.subList(i, base.size()));
+			while(j < newer.length)
+				list.add(newer[j++]);
+			
+			sorted = Collections.unmodifiableList(list);
+			commands = sorted;
+			return sorted;
 		}
 		
-		commands.add(c);
+		FiCommand find(String commandString) {
+			return table != null ? table.find(commandString) : index.find(commandString);
+		}
+		
+		FiCommandIndex getIndex() {
+			//Building the same index twice on different threads is harmless
+			FiCommandIndex i = index;
+			if(i == null) {
+				i = new FiCommandIndex().with(getCommands());
+				index = i;
+			}
+			
+			return i;
+		}
 	}
 	
 	/**
-	 * Adds an equalizing amount of spacing so the command descriptions can all line up and look nice.
-	 * @param cs The commandString
-	 * @return
+	 * The commands added to a registry one at a time, newest first, since its sorted list was last built.
 	 */
-	private String addSpaces(String cs) {
-		String additionalSpace = "";
+	private static final class Added {
 		
-		int spaces = spacing - cs.length();
+		final FiCommand command;
+		final Added previous;
+		final int count;
 		
-		for(int i = 0; i < spaces; i++) {
-			additionalSpace += " ";
+		Added(FiCommand command, Added previous) {
+			this.command = command;
+			this.previous = previous;
+			count = previous == null ? 1 : previous.count + 1;
 		}
+	}
+	
+	/**
+	 * Holds the executor that is used when none has been set, so it is only created if asynchronous commands are actually used.
+	 */
+	private static final class DefaultExecutor {
+		
+		static final Executor INSTANCE = create();
 		
-		return additionalSpace;
+		private static Executor create() {
+			//Virtual threads are only available from Java 21, so look them up instead of depending on them
+			try {
+				return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch(ReflectiveOperationException e) {
+				return Executors.newCachedThreadPool(r -> {
+					Thread t = new Thread(r, "FiCLI-async");
+					t.setDaemon(true);
+					return t;
+				});
+			}
+		}
 	}
 }
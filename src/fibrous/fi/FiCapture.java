@@ -0,0 +1,117 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+
+/**
+ * Runs commands from Java code and collects their output in memory, such as for automated tests or for embedding an {@link FiCLI} in another program.
+ * Every call returns both the {@link FiState} and everything the command wrote to its output stream.
+ * The output buffer is reused and grows as needed, and lines are dispatched with an {@link FiDispatcher},
+ * so capturing the same commands over and over doesn't allocate beyond what the commands do themselves.
+ * Commands should write to {@link FiContext#getOutputStream()} or their session's output, since anything written to System.out isn't captured.
+ * An FiCapture has its own {@link FiSession}, so entering a menu through it doesn't affect any other session, and it is not thread safe.
+ */
+public final class FiCapture {
+	
+	private final FiCaptureStream output;
+	private final LineQueue input;
+	private final FiSession session;
+	private final FiDispatcher dispatcher;
+	private final FiCaptureResult result;
+	
+	/**
+	 * Creates a capture for the given FiCLI.
+	 * @param cli
+	 */
+	public FiCapture(FiCLI cli) {
+		output = new FiCaptureStream();
+		input = new LineQueue();
+		session = new FiSession(input, output);
+		dispatcher = new FiDispatcher(cli, session);
+		result = new FiCaptureResult(output);
+	}
+	
+	/**
+	 * Runs a line of input and captures its output.
+	 * The output from the previous call is cleared first.
+	 * Input lines that the command didn't read are thrown away afterwards, even if the command throws an exception.
+	 * @param commandString
+	 * @return The state and output of the line. This is the same object every time, so read it before running the next line.
+	 */
+	public FiCaptureResult run(String commandString) {
+		output.clear();
+		
+		try {
+			result.state = dispatcher.dispatch(commandString);
+		} finally {
+			input.lines.clear();
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Runs a line of input and captures its output, giving the command lines to read from {@link FiContext#getInputStream()}.
+	 * Once the lines have been read, readLine() returns null.
+	 * @param commandString
+	 * @param inputLines
+	 * @return The state and output of the line. This is the same object every time, so read it before running the next line.
+	 */
+	public FiCaptureResult run(String commandString, String... inputLines) {
+		Collections.addAll(input.lines, inputLines);
+		return run(commandString);
+	}
+	
+	/**
+	 * Returns the session that lines are run in.
+	 * It can be used to set attributes before running a command, or to check which menu the session is in afterwards.
+	 * @return
+	 */
+	public FiSession getSession() {
+		return session;
+	}
+	
+	/**
+	 * The input of a capture, which holds the lines given to a single run.
+	 */
+	private static final class LineQueue implements FiInputStream {
+		
+		final ArrayDeque<String> lines = new ArrayDeque<>();
+		
+		@Override
+		public String readLine() {
+			return lines.poll();
+		}
+	}
+}
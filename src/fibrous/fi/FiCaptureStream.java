@@ -0,0 +1,99 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+/**
+ * A {@link FiOutputStream} that collects everything written to it in memory.
+ * The buffer grows as needed and is kept between uses, so a single FiCaptureStream can be cleared and reused.
+ */
+public class FiCaptureStream implements FiOutputStream {
+	
+	private final StringBuilder buffer;
+	
+	public FiCaptureStream() {
+		buffer = new StringBuilder(256);
+	}
+	
+	/**
+	 * Appends to the buffer.
+	 */
+	@Override
+	public synchronized void print(String s) {
+		buffer.append(s);
+	}
+
+	/**
+	 * Appends to the buffer, followed by a newline.
+	 */
+	@Override
+	public synchronized void println(String s) {
+		buffer.append(s).append('\n');
+	}
+	
+	/**
+	 * Returns everything that has been written since the last clear().
+	 * The returned sequence is the live buffer, so copy it with toString() if it needs to outlive the next clear().
+	 * @return
+	 */
+	public CharSequence getOutput() {
+		return buffer;
+	}
+	
+	/**
+	 * Returns the number of characters that have been written since the last clear().
+	 * @return
+	 */
+	public synchronized int length() {
+		return buffer.length();
+	}
+	
+	/**
+	 * Empties the buffer, keeping its capacity for reuse.
+	 */
+	public synchronized void clear() {
+		buffer.setLength(0);
+	}
+	
+	/**
+	 * Writes everything in the buffer to another {@link FiOutputStream} in a single print.
+	 * @param os
+	 */
+	public synchronized void writeTo(FiOutputStream os) {
+		if(buffer.length() > 0)
+			os.print(buffer.toString());
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return buffer.toString();
+	}
+}
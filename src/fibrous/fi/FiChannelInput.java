@@ -0,0 +1,234 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link FiPollableInputStream} that reads UTF-8 lines from a non-blocking channel, such as a socket or the source of a {@link java.nio.channels.Pipe}.
+ * Reading a line only waits as long as it is allowed to, so no thread is parked waiting for a slow user.
+ * Lines end with '\n', and a '\r' before it is removed.
+ * Lines longer than 64KB are discarded, as they are by {@link FiServer}, so a client can't use up all of the memory.
+ * Once the input has ended, or the channel has been closed, every read returns null and {@link #isAtEnd()} returns true.
+ * A read with a timeout of 0 only tries the channel, so many inputs can be served from a few threads by registering their channels
+ * with a {@link Selector} of your own, and reading from each one when it is readable.
+ * An input only opens a selector of its own the first time a read has to wait, and closes it once the input has ended.
+ * Only one thread should read from an FiChannelInput at a time.
+ */
+public class FiChannelInput implements FiPollableInputStream, Closeable {
+	
+	private final ReadableByteChannel channel;
+	private final SelectableChannel selectable;
+	private final ByteBuffer buffer;
+	
+	//Only opened once a read has to wait
+	private Selector selector;
+	
+	//The bytes of the line being read, until its end arrives
+	private byte[] line;
+	private int lineLength;
+	private boolean discarding;
+	
+	private boolean ended;
+	
+	/**
+	 * Creates an input that reads from the channel.
+	 * The channel is switched to non-blocking mode.
+	 * @param channel
+	 * @throws IOException If the channel can't be made non-blocking.
+	 */
+	public <C extends SelectableChannel & ReadableByteChannel> FiChannelInput(C channel) throws IOException {
+		this.channel = channel;
+		selectable = channel;
+		channel.configureBlocking(false);
+		
+		buffer = ByteBuffer.allocateDirect(8 * 1024);
+		buffer.flip();
+		line = new byte[256];
+	}
+	
+	/**
+	 * Waits for the next line, for as long as it takes.
+	 * @return The line, or null once the input has ended.
+	 */
+	@Override
+	public String readLine() {
+		while(true) {
+			String s = readLine(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			if(s != null || ended)
+				return s;
+		}
+	}
+	
+	@Override
+	public String readLine(long timeout, TimeUnit unit) {
+		long nanos = unit.toNanos(timeout);
+		long deadline = System.nanoTime() + nanos;
+		
+		try {
+			while(true) {
+				String s = takeLine();
+				if(s != null)
+					return s;
+				
+				if(ended)
+					return null;
+				
+				//A channel closed on this side has ended as well
+				if(!channel.isOpen())
+					return end();
+				
+				buffer.compact();
+				int read = channel.read(buffer);
+				buffer.flip();
+				
+				if(read > 0)
+					continue;
+				
+				if(read < 0)
+					return end();
+				
+				long remaining = deadline - System.nanoTime();
+				if(nanos <= 0 || remaining <= 0)
+					return null;
+				
+				if(selector == null) {
+					selector = Selector.open();
+					selectable.register(selector, SelectionKey.OP_READ);
+				}
+				
+				selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+				selector.selectedKeys().clear();
+			}
+		} catch(ClosedChannelException e) {
+			return end();
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	@Override
+	public boolean isAtEnd() {
+		return ended;
+	}
+	
+	/**
+	 * Closes the channel.
+	 */
+	@Override
+	public void close() throws IOException {
+		closeSelector();
+		channel.close();
+	}
+	
+	/**
+	 * Moves buffered bytes into the current line, returning it if its end has arrived.
+	 */
+	private String takeLine() {
+		while(buffer.hasRemaining()) {
+			byte b = buffer.get();
+			
+			if(b == '\n') {
+				if(discarding) {
+					discarding = false;
+					continue;
+				}
+				
+				int length = lineLength;
+				if(length > 0 && line[length - 1] == '\r')
+					length--;
+				
+				return finishLine(length);
+			}
+			
+			if(discarding)
+				continue;
+			
+			if(lineLength == FiServer.MAX_LINE_LENGTH) {
+				discarding = true;
+				lineLength = 0;
+				continue;
+			}
+			
+			if(lineLength == line.length)
+				line = Arrays.copyOf(line, Math.min(line.length * 2, FiServer.MAX_LINE_LENGTH));
+			
+			line[lineLength++] = b;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Marks the input as ended, returning the last line if it wasn't ended with '\n'.
+	 */
+	private String end() {
+		ended = true;
+		buffer.clear().flip();
+		closeSelector();
+		
+		String s = lineLength > 0 && !discarding ? finishLine(lineLength) : null;
+		lineLength = 0;
+		discarding = false;
+		return s;
+	}
+	
+	private void closeSelector() {
+		if(selector == null)
+			return;
+		
+		try {
+			selector.close();
+		} catch(IOException e) {
+			//The selector was only used to wait, so there is nothing left to clean up
+		}
+		
+		selector = null;
+	}
+	
+	private String finishLine(int length) {
+		String s = new String(line, 0, length, StandardCharsets.UTF_8);
+		lineLength = 0;
+		return s;
+	}
+}
@@ -32,11 +32,10 @@
 package fibrous.fi;
 
 import java.util.ArrayList;
-import java.util.Scanner;
 
 /**
  * The base class which should be extended by all other commands.
- * You must override the {@link execute()} method to perform whatever action that is needed.
+ * You must override either the {@link execute()} or the {@link execute(FiContext)} method to perform whatever action that is needed.
  * You must define the commandString (what input is needed to execute the command).
  * Once a new command class has been created, it must be instantiated and added to the {@link FiCLI}.
  * Whenever input is passed to the InputParser, if it matches the command string, the execute method will run.
@@ -53,9 +52,17 @@ public abstract class FiCommand {
 	
 	/**
 	 * A list of arguments derived from the input.
+	 * This is shared by every caller of this command, so commands that may be executed by more than one thread at a time
+	 * should override {@link execute(FiContext)} and use {@link FiContext#getArguments()} instead.
 	 */
 	public ArrayList<String> arguments;
 	
+	/**
+	 * The same arguments as {@link arguments}, held in a reusable {@link FiArguments} buffer.
+	 * Use this to read arguments without creating a String for each one.
+	 */
+	public final FiArguments argumentViews;
+	
 	/**
 	 * The description of the command.
 	 * Shown when all of the commands are listed.
@@ -67,6 +74,34 @@ public abstract class FiCommand {
 	 */
 	public boolean isVisible = true;
 	
+	/**
+	 * Change this to true if the command may be run on the {@link FiCLI} executor by processCommandAsync(), such as on a virtual thread.
+	 * Asynchronous commands should override {@link execute(FiContext)} and write to {@link FiContext#getOutputStream()}.
+	 */
+	public boolean isAsync = false;
+	
+	/**
+	 * Change this to true if the command doesn't depend on, or change anything used by, the commands around it.
+	 * An {@link FiScriptRunner} with a parallelism above 1 may then run it at the same time as the independent commands next to it in a script.
+	 * Independent commands should override {@link execute(FiContext)} and write to {@link FiContext#getOutputStream()}.
+	 */
+	public boolean isIndependent = false;
+	
+	/**
+	 * Set this above 0 if the command only looks something up, and gives the same output for the same arguments.
+	 * The {@link FiCLI} then keeps its output for this many milliseconds, and writes the kept output instead of executing the command again.
+	 * Invalidate the result through {@link FiCLI#getResultCache()} when whatever the command shows has changed.
+	 * Kept output is shared by every session, so don't set this if the output depends on the session.
+	 */
+	public long cacheTTL = 0;
+	
+	/**
+	 * Set this to describe the arguments this command accepts.
+	 * When set, the input is checked and converted before the command is executed, and the values are available from {@link FiContext#getOptions()}.
+	 * Leave this null to receive the arguments unchecked.
+	 */
+	public FiSchema schema = null;
+	
 	/**
 	 * You must determine what string this command will respond to (the commandString parameter).
 	 * @param commandString
@@ -75,16 +110,49 @@ public abstract class FiCommand {
 		this.commandString = commandString;
 		
 		arguments = new ArrayList<>();
+		argumentViews = new FiArguments();
 	}
 	
 	/**
 	 * Override this method to perform whatever function is needed.
+	 * The arguments for the current invocation are in the {@link arguments} ArrayList.
+	 * @throws IllegalStateException If neither this method nor {@link execute(FiContext)} was overridden.
 	 */
-	public abstract void execute();
+	public void execute() {
+		throw new IllegalStateException("Command \"" + commandString + "\" must override execute() or execute(FiContext)");
+	}
+	
+	/**
+	 * Override this method instead of {@link execute()} to receive the arguments, input, and session of each invocation in its own {@link FiContext}.
+	 * Nothing in the context is shared with other invocations, so a command that only uses the context can safely be executed by many threads at once.
+	 * By default, this copies the arguments into the shared {@link arguments} ArrayList and calls {@link execute()},
+	 * one invocation at a time, so commands written before FiContext existed keep working.
+	 * @param context
+	 */
+	public void execute(FiContext context) {
+		synchronized(this) {
+			argumentViews.copyFrom(context.getArguments());
+			
+			arguments.clear();
+			for(int i = 0; i < argumentViews.size(); i++)
+				arguments.add(argumentViews.get(i));
+			
+			execute();
+		}
+	}
+	
+	/**
+	 * Returns the schema that the arguments are checked against when this command is dispatched.
+	 * @return
+	 */
+	FiSchema getSchema() {
+		return schema;
+	}
 	
 	/**
 	 * Determines if the command that was passed matches the defined command string.
 	 * Fills the arguments ArrayList if it contains any arguments.
+	 * Arguments are split up by the {@link FiTokenizer}, so quoted arguments and repeated spaces are handled.
 	 * @param cString
 	 * @return
 	 */
@@ -96,27 +164,23 @@ public abstract class FiCommand {
 		//Check for obviously different commands and proceed accordingly
 		if(cString.length() < commandString.length())
 			return false;
-			
-		String compareString = cString.substring(0, commandString.length());
 		
-		//Compare the command string and scan for any arguments
-		if(compareString.compareTo(commandString) == 0) {
-			String argumentsString = cString.substring(commandString.length());
-			Scanner scanner = new Scanner(argumentsString);
-			scanner.useDelimiter(" ");
-			
-			//Check for and store command arguments
-			while(true) {
-				if(scanner.hasNext())
-					arguments.add(scanner.next());
-				else
-					break;
-			}
-			
-			scanner.close();
-			
-			return true;
-		} else
+		//The command string must be followed by a space or the end of the input, so "add" won't match "address"
+		if(cString.length() > commandString.length() && cString.charAt(commandString.length()) != ' ')
 			return false;
+		
+		//Compare the command string without creating a substring
+		for(int i = 0; i < commandString.length(); i++) {
+			if(cString.charAt(i) != commandString.charAt(i))
+				return false;
+		}
+		
+		//Check for and store command arguments
+		FiTokenizer.tokenize(cString, commandString.length(), argumentViews);
+		
+		for(int i = 0; i < argumentViews.size(); i++)
+			arguments.add(argumentViews.get(i));
+		
+		return true;
 	}
 }
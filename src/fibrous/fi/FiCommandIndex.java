@@ -0,0 +1,417 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A prefix tree over the commandStrings of a set of {@link FiCommand} objects.
+ * Used by the {@link FiCLI} to find the command that an input line refers to in time proportional to the length of the line,
+ * instead of comparing the line against every configured command.
+ * A commandString only matches when it is followed by a space or the end of the input,
+ * so "add" will not match "address 5".
+ * When more than one commandString matches, the longest one wins ("get record" over "get").
+ * The same tree is used to suggest the commands closest to invalid input, by following only the branches that are within a few edits of it.
+ * An index is never changed once it has been created. Adding or removing commands creates a new index that shares every branch it didn't change,
+ * so an index can be read by any number of threads while a new one is being built.
+ */
+final class FiCommandIndex {
+	
+	//The most nodes a single suggestion search looks at, so a search takes a bounded amount of time however many commands there are
+	static final int MAX_VISITS = 5000;
+	
+	private final Node root;
+	private final int maxLength;
+	private final int maxWords;
+	
+	/**
+	 * Creates an empty index.
+	 */
+	FiCommandIndex() {
+		this(new Node(null), 0, 1);
+	}
+	
+	private FiCommandIndex(Node root, int maxLength, int maxWords) {
+		this.root = root;
+		this.maxLength = maxLength;
+		this.maxWords = maxWords;
+	}
+	
+	/**
+	 * Returns a new index with the commands added to it, leaving this index as it is.
+	 * Only the nodes on the path to each added command are copied, and each of them only once.
+	 * If a command with the same commandString is already indexed, the existing command is kept.
+	 * @param commands
+	 * @return
+	 */
+	FiCommandIndex with(Iterable<? extends FiCommand> commands) {
+		//Nodes copied for this index are marked with it, so they can be changed in place for the rest of the commands
+		Object edit = new Object();
+		Node newRoot = root.copy(edit);
+		int newMaxLength = maxLength;
+		int newMaxWords = maxWords;
+		
+		for(FiCommand command : commands) {
+			Node node = newRoot;
+			String cs = command.commandString;
+			
+			for(int i = 0; i < cs.length(); i++)
+				node = node.getOrAddChild(cs.charAt(i), edit);
+			
+			if(node.command == null)
+				node.command = command;
+			
+			newMaxLength = Math.max(newMaxLength, cs.length());
+			newMaxWords = Math.max(newMaxWords, wordCount(cs));
+		}
+		
+		return new FiCommandIndex(newRoot, newMaxLength, newMaxWords);
+	}
+	
+	/**
+	 * Returns a new index without the command, leaving this index as it is.
+	 * Only the nodes on the path to the command are copied, and branches that are left without any commands are dropped.
+	 * @param command
+	 * @return The new index, or this index if the command isn't in it.
+	 */
+	FiCommandIndex without(FiCommand command) {
+		String cs = command.commandString;
+		
+		//Find the path first, so nothing is copied if the command isn't indexed
+		Node[] path = new Node[cs.length() + 1];
+		path[0] = root;
+		for(int i = 0; i < cs.length(); i++) {
+			path[i + 1] = path[i].getChild(cs.charAt(i));
+			if(path[i + 1] == null)
+				return this;
+		}
+		
+		if(path[cs.length()].command != command)
+			return this;
+		
+		Object edit = new Object();
+		Node child = path[cs.length()].copy(edit);
+		child.command = null;
+		
+		//Copy each node on the way back up, pointing it at the copy below it, or at nothing if that copy is empty
+		for(int i = cs.length() - 1; i >= 0; i--) {
+			Node node = path[i].copy(edit);
+			
+			if(child.command == null && child.keys.length == 0)
+				node.removeChild(cs.charAt(i));
+			else
+				node.setChild(cs.charAt(i), child);
+			
+			child = node;
+		}
+		
+		//The longest commandString and most words are only used as upper bounds, so they are kept
+		return new FiCommandIndex(child, maxLength, maxWords);
+	}
+	
+	/**
+	 * Finds the command with the longest commandString that matches the beginning of the input.
+	 * @param input
+	 * @return The matching command, or null if nothing matches.
+	 */
+	FiCommand find(CharSequence input) {
+		Node node = root;
+		FiCommand match = null;
+		int length = input.length();
+		
+		for(int i = 0; i < length; i++) {
+			char c = input.charAt(i);
+			
+			//A complete commandString followed by a space is a candidate
+			if(c == ' ' && node.command != null)
+				match = node.command;
+			
+			node = node.getChild(c);
+			if(node == null)
+				return match;
+		}
+		
+		//The whole input is a commandString
+		if(node.command != null)
+			return node.command;
+		
+		return match;
+	}
+	
+	/**
+	 * Finds the visible commandStrings that are closest to the input, by edit distance, ignoring case.
+	 * Since the input may be followed by arguments, it is compared one word at a time:
+	 * "get recrd 5" is searched for as "get", then "get recrd", and then "get recrd 5".
+	 * @param input
+	 * @param max The most suggestions to return.
+	 * @return The closest commandStrings, closest first.
+	 */
+	List<String> suggest(String input, int max) {
+		ArrayList<String> suggestions = new ArrayList<>();
+		String line = input.strip();
+		ArrayList<Match> found = new ArrayList<>();
+		
+		//Look for the closest commands first, and only look further away if there aren't enough of them
+		int maxLimit = line.length() <= 4 ? 1 : 2;
+		for(int limit = 1; limit <= maxLimit && found.size() < max; limit++) {
+			int end = 0;
+			for(int words = 1; words <= maxWords && end < line.length(); words++) {
+				end = line.indexOf(' ', end + 1);
+				if(end < 0)
+					end = line.length();
+				
+				search(line.substring(0, end), Math.min(limit, end <= 4 ? 1 : 2), found);
+				
+				//Skip repeated spaces between words
+				while(end + 1 < line.length() && line.charAt(end + 1) == ' ')
+					end++;
+			}
+		}
+		
+		//Closest first, and alphabetically among equally close commands
+		found.sort(Comparator.comparingInt((Match m) -> m.distance).thenComparing(m -> m.commandString));
+		
+		for(int i = 0; i < found.size() && i < max; i++)
+			suggestions.add(found.get(i).commandString);
+		
+		return suggestions;
+	}
+	
+	private void search(String query, int limit, List<Match> found) {
+		
+		//One row of the edit distance table for every character of the path to a node
+		int[][] rows = new int[maxLength + 1][query.length() + 1];
+		for(int i = 0; i <= query.length(); i++)
+			rows[0][i] = i;
+		
+		search(root, 0, (char) 0, query, limit, rows, found, new int[1]);
+	}
+	
+	/**
+	 * Extends the edit distance table by one row for each child, and only follows children whose row is still within the limit.
+	 * Swapping two neighboring characters counts as a single edit, so "mneu" is one edit away from "menu".
+	 */
+	private static void search(Node node, int depth, char last, String query, int limit, int[][] rows, List<Match> found, int[] visits) {
+		int n = query.length();
+		int[] previous = rows[depth];
+		
+		for(int k = 0; k < node.keys.length && visits[0] < MAX_VISITS; k++) {
+			visits[0]++;
+			
+			char c = Character.toLowerCase(node.keys[k]);
+			int[] row = rows[depth + 1];
+			row[0] = previous[0] + 1;
+			int best = row[0];
+			
+			for(int i = 1; i <= n; i++) {
+				char q = Character.toLowerCase(query.charAt(i - 1));
+				row[i] = Math.min(Math.min(row[i - 1] + 1, previous[i] + 1), previous[i - 1] + (q == c ? 0 : 1));
+				
+				if(depth > 0 && i > 1 && q == last && Character.toLowerCase(query.charAt(i - 2)) == c)
+					row[i] = Math.min(row[i], rows[depth - 1][i - 2] + 1);
+				
+				best = Math.min(best, row[i]);
+			}
+			
+			//No command further down this branch can be any closer than the best of this row
+			if(best > limit)
+				continue;
+			
+			Node child = node.children[k];
+			if(child.command != null && child.command.isVisible && row[n] <= limit)
+				addMatch(found, child.command.commandString, row[n]);
+			
+			search(child, depth + 1, c, query, limit, rows, found, visits);
+		}
+	}
+	
+	/**
+	 * Keeps the closest distance found for each commandString, since it may be found by more than one search.
+	 */
+	private static void addMatch(List<Match> found, String commandString, int distance) {
+		for(Match m : found) {
+			if(m.commandString.equals(commandString)) {
+				m.distance = Math.min(m.distance, distance);
+				return;
+			}
+		}
+		
+		found.add(new Match(commandString, distance));
+	}
+	
+	private static int wordCount(String s) {
+		int words = 1;
+		for(int i = 1; i < s.length(); i++) {
+			if(s.charAt(i) != ' ' && s.charAt(i - 1) == ' ')
+				words++;
+		}
+		
+		return words;
+	}
+	
+	private static final class Match {
+		
+		final String commandString;
+		int distance;
+		
+		Match(String commandString, int distance) {
+			this.commandString = commandString;
+			this.distance = distance;
+		}
+	}
+	
+	/**
+	 * A single character position in the tree.
+	 * Children are kept in parallel arrays sorted by character so they can be binary searched.
+	 * A node is only changed by the edit that created it, before the index it belongs to is used.
+	 */
+	private static final class Node {
+		
+		private static final char[] NO_KEYS = new char[0];
+		private static final Node[] NO_CHILDREN = new Node[0];
+		
+		final Object owner;
+		char[] keys = NO_KEYS;
+		Node[] children = NO_CHILDREN;
+		FiCommand command;
+		
+		Node(Object owner) {
+			this.owner = owner;
+		}
+		
+		/**
+		 * Copies this node for an edit.
+		 * The keys are shared, since they are replaced rather than changed, but the children are changed in place, so they are copied.
+		 */
+		Node copy(Object edit) {
+			Node n = new Node(edit);
+			n.keys = keys;
+			n.children = children.length == 0 ? NO_CHILDREN : children.clone();
+			n.command = command;
+			return n;
+		}
+		
+		Node getChild(char c) {
+			int i = indexOf(c);
+			return i < 0 ? null : children[i];
+		}
+		
+		/**
+		 * Returns the child for a character, copying it first if it belongs to an older index.
+		 * This node must already belong to the edit.
+		 */
+		Node getOrAddChild(char c, Object edit) {
+			int i = indexOf(c);
+			if(i >= 0) {
+				Node child = children[i];
+				if(child.owner != edit) {
+					child = child.copy(edit);
+					children[i] = child;
+				}
+				
+				return child;
+			}
+			
+			//Insert the new child while keeping the keys sorted
+			int insert = -(i + 1);
+			char[] newKeys = new char[keys.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			
+			System.arraycopy(keys, 0, newKeys, 0, insert);
+			System.arraycopy(children, 0, newChildren, 0, insert);
+			System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+			System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+			
+			Node child = new Node(edit);
+			newKeys[insert] = c;
+			newChildren[insert] = child;
+			
+			keys = newKeys;
+			children = newChildren;
+			
+			return child;
+		}
+		
+		/**
+		 * Replaces the child for a character that is already in this node.
+		 * This node must already belong to the edit.
+		 */
+		void setChild(char c, Node child) {
+			children[indexOf(c)] = child;
+		}
+		
+		/**
+		 * Removes the child for a character that is already in this node.
+		 * This node must already belong to the edit.
+		 */
+		void removeChild(char c) {
+			int i = indexOf(c);
+			if(keys.length == 1) {
+				keys = NO_KEYS;
+				children = NO_CHILDREN;
+				return;
+			}
+			
+			char[] newKeys = new char[keys.length - 1];
+			Node[] newChildren = new Node[children.length - 1];
+			
+			System.arraycopy(keys, 0, newKeys, 0, i);
+			System.arraycopy(children, 0, newChildren, 0, i);
+			System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+			System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+			
+			keys = newKeys;
+			children = newChildren;
+		}
+		
+		private int indexOf(char c) {
+			int low = 0;
+			int high = keys.length - 1;
+			
+			while(low <= high) {
+				int mid = (low + high) >>> 1;
+				char k = keys[mid];
+				
+				if(k < c)
+					low = mid + 1;
+				else if(k > c)
+					high = mid - 1;
+				else
+					return mid;
+			}
+			
+			return -(low + 1);
+		}
+	}
+}
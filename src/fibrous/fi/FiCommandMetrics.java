@@ -0,0 +1,163 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The live counters of a single {@link FiCommand}.
+ * Every counter is a {@link LongAdder}, which spreads updates from different threads over separate cells,
+ * so commands that are dispatched by many threads at once don't contend on a single value.
+ * Execution times are counted in a fixed number of logarithmic buckets, four for every power of two nanoseconds,
+ * so percentiles are accurate to within about 25% no matter how many invocations there have been.
+ */
+final class FiCommandMetrics {
+	
+	//Values below 4ns get a bucket each, and then each power of two from 2^2 up to 2^41ns (about 36 minutes) is split into four
+	private static final int MAX_EXPONENT = 41;
+	static final int BUCKETS = 4 + (MAX_EXPONENT - 1) * 4;
+	
+	final String commandString;
+	final LongAdder invocations;
+	final LongAdder errors;
+	final LongAdder cacheHits;
+	final LongAdder[] states;
+	final LongAdder totalNanos;
+	final LongAccumulator maxNanos;
+	final LongAdder[] buckets;
+	
+	FiCommandMetrics(String commandString) {
+		this.commandString = commandString;
+		invocations = new LongAdder();
+		errors = new LongAdder();
+		cacheHits = new LongAdder();
+		totalNanos = new LongAdder();
+		maxNanos = new LongAccumulator(Math::max, 0);
+		
+		states = new LongAdder[FiState.NUM_OF_STATES];
+		for(int i = 0; i < states.length; i++)
+			states[i] = new LongAdder();
+		
+		buckets = new LongAdder[BUCKETS];
+		for(int i = 0; i < buckets.length; i++)
+			buckets[i] = new LongAdder();
+	}
+	
+	/**
+	 * Records a single invocation.
+	 * @param state The state that the invocation resulted in.
+	 * @param nanos How long the command took to execute.
+	 */
+	void record(int state, long nanos) {
+		if(state >= 0 && state < states.length)
+			states[state].increment();
+		
+		time(nanos);
+	}
+	
+	/**
+	 * Records a single invocation that threw an exception, which isn't counted in any state.
+	 * @param nanos How long the command ran before it failed.
+	 */
+	void recordError(long nanos) {
+		errors.increment();
+		time(nanos);
+	}
+	
+	/**
+	 * Records an invocation that was answered from the cache, which isn't counted as an execution or timed.
+	 */
+	void recordCacheHit() {
+		cacheHits.increment();
+		states[FiState.VALID].increment();
+	}
+	
+	private void time(long nanos) {
+		invocations.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+		buckets[bucketOf(nanos)].increment();
+	}
+	
+	/**
+	 * Records a state without an execution to time.
+	 * @param state
+	 */
+	void recordState(int state) {
+		if(state >= 0 && state < states.length)
+			states[state].increment();
+	}
+	
+	void reset() {
+		invocations.reset();
+		errors.reset();
+		cacheHits.reset();
+		totalNanos.reset();
+		maxNanos.reset();
+		
+		for(LongAdder a : states)
+			a.reset();
+		for(LongAdder a : buckets)
+			a.reset();
+	}
+	
+	/**
+	 * Returns the bucket that a duration is counted in.
+	 */
+	static int bucketOf(long nanos) {
+		if(nanos < 4)
+			return nanos < 0 ? 0 : (int) nanos;
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		if(exponent > MAX_EXPONENT)
+			return BUCKETS - 1;
+		
+		//The two bits after the highest one pick one of the four buckets for this power of two, which start right after the first four
+		int sub = (int) (nanos >>> (exponent - 2)) & 3;
+		return ((exponent - 1) << 2) | sub;
+	}
+	
+	/**
+	 * Returns the largest duration that is counted in a bucket.
+	 */
+	static long upperBoundOf(int bucket) {
+		if(bucket < 4)
+			return bucket;
+		
+		int exponent = (bucket >>> 2) + 1;
+		int sub = bucket & 3;
+		long lower = (1L << exponent) | ((long) sub << (exponent - 2));
+		
+		return lower + (1L << (exponent - 2)) - 1;
+	}
+}
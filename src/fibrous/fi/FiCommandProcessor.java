@@ -0,0 +1,519 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates an {@link FiCommandTable} named FiCompiledCommands for every package that declares commands with {@link FiCommandDef}.
+ * The commands are sorted when they are compiled, and found by a switch over the length and first character of the input,
+ * so registering them doesn't sort, index, or reflect on anything at runtime.
+ * The processor is registered as a service in the FiCLI jar, so it runs whenever the jar is on the compile classpath.
+ */
+public final class FiCommandProcessor extends AbstractProcessor {
+	
+	/**
+	 * The simple name of the class generated in each package.
+	 */
+	public final static String TABLE_NAME = "FiCompiledCommands";
+	
+	private final static String[] TYPE_NAMES = {"STRING", "INT", "LONG", "DOUBLE", "BOOLEAN"};
+	
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		return Set.of(FiCommandDef.class.getCanonicalName());
+	}
+	
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+	
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		LinkedHashMap<PackageElement, List<Entry>> packages = new LinkedHashMap<>();
+		
+		for(Element e : roundEnv.getElementsAnnotatedWith(FiCommandDef.class)) {
+			Entry entry = read(e);
+			if(entry != null)
+				packages.computeIfAbsent(processingEnv.getElementUtils().getPackageOf(e), p -> new ArrayList<>()).add(entry);
+		}
+		
+		for(Map.Entry<PackageElement, List<Entry>> p : packages.entrySet()) {
+			List<Entry> entries = p.getValue();
+			entries.sort(Comparator.comparing(entry -> entry.commandString));
+			
+			if(hasDuplicates(entries))
+				continue;
+			
+			try {
+				write(p.getKey(), entries);
+			} catch(IOException ex) {
+				error(entries.get(0).element, "Could not write " + TABLE_NAME + ": " + ex.getMessage());
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Reads and checks one declared command.
+	 * @return The command, or null if it was reported as an error.
+	 */
+	private Entry read(Element e) {
+		FiCommandDef def = e.getAnnotation(FiCommandDef.class);
+		String commandString = def.value();
+		
+		if(commandString.isBlank() || !commandString.equals(commandString.strip())) {
+			error(e, "The command string \"" + commandString + "\" can't be blank, or start or end with a space");
+			return null;
+		}
+		
+		if(!e.getModifiers().contains(Modifier.PUBLIC)) {
+			error(e, "Commands declared with @FiCommandDef must be public");
+			return null;
+		}
+		
+		if(e.getKind() == ElementKind.METHOD) {
+			if(!isValidMethod((ExecutableElement) e))
+				return null;
+		} else if(!isValidClass((TypeElement) e)) {
+			return null;
+		}
+		
+		Entry entry = new Entry(e, commandString, def.description(), def.visible());
+		
+		for(AnnotationMirror arg : findArgs(e)) {
+			if(!readArg(e, arg, entry))
+				return null;
+		}
+		
+		return entry;
+	}
+	
+	private boolean isValidMethod(ExecutableElement method) {
+		TypeMirror context = processingEnv.getElementUtils().getTypeElement(FiContext.class.getCanonicalName()).asType();
+		
+		if(!method.getModifiers().contains(Modifier.STATIC)
+				|| method.getParameters().size() != 1
+				|| !processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), context)
+				|| !isAccessible((TypeElement) method.getEnclosingElement())) {
+			error(method, "Methods declared with @FiCommandDef must be public static methods of a public class, that take an FiContext");
+			return false;
+		}
+		
+		return true;
+	}
+	
+	private boolean isValidClass(TypeElement type) {
+		TypeMirror command = processingEnv.getElementUtils().getTypeElement(FiCommand.class.getCanonicalName()).asType();
+		
+		if(type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)
+				|| !isAccessible(type) || !processingEnv.getTypeUtils().isSubtype(type.asType(), command)) {
+			error(type, "Classes declared with @FiCommandDef must be public, not abstract, and extend FiCommand");
+			return false;
+		}
+		
+		TypeMirror string = processingEnv.getElementUtils().getTypeElement(String.class.getCanonicalName()).asType();
+		for(Element member : type.getEnclosedElements()) {
+			if(member.getKind() != ElementKind.CONSTRUCTOR || !member.getModifiers().contains(Modifier.PUBLIC))
+				continue;
+			
+			List<? extends VariableElement> params = ((ExecutableElement) member).getParameters();
+			if(params.size() == 1 && processingEnv.getTypeUtils().isSameType(params.get(0).asType(), string))
+				return true;
+		}
+		
+		error(type, "Classes declared with @FiCommandDef must have a public constructor that takes the commandString");
+		return false;
+	}
+	
+	/**
+	 * Returns true if a class can be created from another package, including nested classes that are public and static.
+	 */
+	private static boolean isAccessible(TypeElement type) {
+		while(type.getNestingKind() == NestingKind.MEMBER) {
+			if(!type.getModifiers().contains(Modifier.PUBLIC) || !type.getModifiers().contains(Modifier.STATIC) && type.getKind() == ElementKind.CLASS)
+				return false;
+			
+			type = (TypeElement) type.getEnclosingElement();
+		}
+		
+		return type.getNestingKind() == NestingKind.TOP_LEVEL && type.getModifiers().contains(Modifier.PUBLIC);
+	}
+	
+	/**
+	 * Returns the FiArg annotations of an element in the order they were written, whether or not they were repeated.
+	 */
+	private List<AnnotationMirror> findArgs(Element e) {
+		ArrayList<AnnotationMirror> args = new ArrayList<>();
+		String argName = FiArg.class.getCanonicalName();
+		String listName = FiArg.List.class.getCanonicalName();
+		
+		for(AnnotationMirror m : e.getAnnotationMirrors()) {
+			String name = ((TypeElement) m.getAnnotationType().asElement()).getQualifiedName().toString();
+			
+			if(name.equals(argName)) {
+				args.add(m);
+			} else if(name.equals(listName)) {
+				for(AnnotationValue v : explicitValues(m).values()) {
+					for(Object o : (List<?>) v.getValue())
+						args.add((AnnotationMirror) ((AnnotationValue) o).getValue());
+				}
+			}
+		}
+		
+		return args;
+	}
+	
+	/**
+	 * Reads one FiArg, and checks it by declaring it on a schema the same way the generated code will.
+	 * Only the values that were written are used, so unset values keep the defaults of FiSchema.
+	 */
+	private boolean readArg(Element e, AnnotationMirror mirror, Entry entry) {
+		Map<String, AnnotationValue> values = explicitValues(mirror);
+		
+		Arg arg = new Arg();
+		arg.name = (String) values.get("value").getValue();
+		arg.type = values.containsKey("type") ? (Integer) values.get("type").getValue() : FiSchema.STRING;
+		arg.isFlag = values.containsKey("flag") && (Boolean) values.get("flag").getValue();
+		arg.required = values.containsKey("required") ? (Boolean) values.get("required").getValue() : null;
+		arg.defaultValue = values.containsKey("defaultValue") ? (String) values.get("defaultValue").getValue() : null;
+		
+		if(values.containsKey("values")) {
+			ArrayList<String> allowed = new ArrayList<>();
+			for(Object o : (List<?>) values.get("values").getValue())
+				allowed.add((String) ((AnnotationValue) o).getValue());
+			
+			arg.values = allowed.toArray(new String[0]);
+		}
+		
+		if(arg.type < 0 || arg.type >= TYPE_NAMES.length) {
+			error(e, "The type of \"" + arg.name + "\" must be one of the types defined in FiSchema");
+			return false;
+		}
+		
+		try {
+			arg.declare(entry.schema);
+		} catch(IllegalArgumentException ex) {
+			error(e, ex.getMessage());
+			return false;
+		}
+		
+		entry.args.add(arg);
+		return true;
+	}
+	
+	private static Map<String, AnnotationValue> explicitValues(AnnotationMirror mirror) {
+		LinkedHashMap<String, AnnotationValue> values = new LinkedHashMap<>();
+		for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> v : mirror.getElementValues().entrySet())
+			values.put(v.getKey().getSimpleName().toString(), v.getValue());
+		
+		return values;
+	}
+	
+	private boolean hasDuplicates(List<Entry> sorted) {
+		boolean found = false;
+		
+		for(int i = 1; i < sorted.size(); i++) {
+			if(sorted.get(i).commandString.equals(sorted.get(i - 1).commandString)) {
+				error(sorted.get(i).element, "The command string \"" + sorted.get(i).commandString + "\" is declared more than once in this package");
+				found = true;
+			}
+		}
+		
+		return found;
+	}
+	
+	private void write(PackageElement pkg, List<Entry> entries) throws IOException {
+		String packageName = pkg.getQualifiedName().toString();
+		String className = packageName.isEmpty() ? TABLE_NAME : packageName + "." + TABLE_NAME;
+		Element[] origins = new Element[entries.size()];
+		for(int i = 0; i < origins.length; i++)
+			origins[i] = entries.get(i).element;
+		
+		StringBuilder sb = new StringBuilder(4096);
+		
+		if(!packageName.isEmpty())
+			sb.append("package ").append(packageName).append(";\n\n");
+		
+		sb.append("import fibrous.fi.FiCommand;\n");
+		sb.append("import fibrous.fi.FiCommandTable;\n");
+		sb.append("import fibrous.fi.FiContext;\n");
+		sb.append("import fibrous.fi.FiSchema;\n\n");
+		
+		sb.append("/**\n");
+		sb.append(" * The commands declared with FiCommandDef in this package.\n");
+		sb.append(" * Generated by the FiCommandProcessor, so any changes will be lost.\n");
+		sb.append(" */\n");
+		if(processingEnv.getElementUtils().getTypeElement("javax.annotation.processing.Generated") != null)
+			sb.append("@javax.annotation.processing.Generated(\"").append(FiCommandProcessor.class.getCanonicalName()).append("\")\n");
+		sb.append("public final class ").append(TABLE_NAME).append(" implements FiCommandTable {\n\t\n");
+		
+		int maxLength = 0;
+		for(Entry entry : entries)
+			maxLength = Math.max(maxLength, entry.commandString.length());
+		
+		sb.append("\tprivate final static int MAX_LENGTH = ").append(maxLength).append(";\n\t\n");
+		sb.append("\tprivate final FiCommand[] commands;\n\t\n");
+		
+		//Every command is created by its own method, in alphabetical order
+		sb.append("\tpublic ").append(TABLE_NAME).append("() {\n");
+		sb.append("\t\tcommands = new FiCommand[] {\n");
+		for(int i = 0; i < entries.size(); i++)
+			sb.append("\t\t\tcommand").append(i).append("(),\n");
+		sb.append("\t\t};\n\t}\n\t\n");
+		
+		for(int i = 0; i < entries.size(); i++)
+			writeCommand(sb, entries.get(i), i);
+		
+		sb.append("\t@Override\n");
+		sb.append("\tpublic FiCommand[] getCommands() {\n");
+		sb.append("\t\treturn commands;\n");
+		sb.append("\t}\n\t\n");
+		
+		//Try the whole input, and then each shorter part of it that ends before a space, so the longest commandString wins
+		sb.append("\t@Override\n");
+		sb.append("\tpublic FiCommand find(String input) {\n");
+		sb.append("\t\tint end = input.length();\n");
+		sb.append("\t\twhile(end > 0) {\n");
+		sb.append("\t\t\tif(end <= MAX_LENGTH) {\n");
+		sb.append("\t\t\t\tFiCommand c = match(input, end);\n");
+		sb.append("\t\t\t\tif(c != null)\n");
+		sb.append("\t\t\t\t\treturn c;\n");
+		sb.append("\t\t\t}\n\t\t\t\n");
+		sb.append("\t\t\tend = input.lastIndexOf(' ', end - 1);\n");
+		sb.append("\t\t}\n\t\t\n");
+		sb.append("\t\treturn null;\n");
+		sb.append("\t}\n\t\n");
+		
+		writeMatch(sb, entries);
+		
+		sb.append("}\n");
+		
+		try(Writer w = processingEnv.getFiler().createSourceFile(className, origins).openWriter()) {
+			w.write(sb.toString());
+		}
+	}
+	
+	private static void writeCommand(StringBuilder sb, Entry entry, int i) {
+		sb.append("\tprivate static FiCommand command").append(i).append("() {\n");
+		
+		if(entry.element.getKind() == ElementKind.METHOD) {
+			TypeElement owner = (TypeElement) entry.element.getEnclosingElement();
+			
+			sb.append("\t\tFiCommand c = new FiCommand(").append(literal(entry.commandString)).append(") {\n");
+			sb.append("\t\t\t@Override\n");
+			sb.append("\t\t\tpublic void execute(FiContext context) {\n");
+			sb.append("\t\t\t\t").append(owner.getQualifiedName()).append('.').append(entry.element.getSimpleName()).append("(context);\n");
+			sb.append("\t\t\t}\n");
+			sb.append("\t\t};\n");
+		} else {
+			sb.append("\t\tFiCommand c = new ").append(((TypeElement) entry.element).getQualifiedName())
+					.append('(').append(literal(entry.commandString)).append(");\n");
+		}
+		
+		if(!entry.description.isEmpty())
+			sb.append("\t\tc.commandDescription = ").append(literal(entry.description)).append(";\n");
+		if(!entry.isVisible)
+			sb.append("\t\tc.isVisible = false;\n");
+		
+		if(!entry.args.isEmpty()) {
+			sb.append("\t\t\n\t\tFiSchema schema = new FiSchema();\n");
+			for(Arg arg : entry.args) {
+				sb.append("\t\tschema.").append(arg.isFlag ? "flag(" : "positional(").append(literal(arg.name))
+						.append(", FiSchema.").append(TYPE_NAMES[arg.type]).append(')');
+				
+				if(arg.values != null) {
+					sb.append(".values(");
+					for(int v = 0; v < arg.values.length; v++)
+						sb.append(v == 0 ? "" : ", ").append(literal(arg.values[v]));
+					sb.append(')');
+				}
+				if(arg.defaultValue != null)
+					sb.append(".defaultValue(").append(literal(arg.defaultValue)).append(')');
+				if(arg.required != null)
+					sb.append(".required(").append(arg.required).append(')');
+				
+				sb.append(";\n");
+			}
+			sb.append("\t\tc.schema = schema;\n");
+		}
+		
+		sb.append("\t\treturn c;\n");
+		sb.append("\t}\n\t\n");
+	}
+	
+	/**
+	 * Writes a switch over the length of the part of the input being tried, and then over its first character,
+	 * so only the few commandStrings that could match are compared.
+	 */
+	private static void writeMatch(StringBuilder sb, List<Entry> entries) {
+		//Group the commands by length, and then by first character, keeping their index in the sorted array
+		Map<Integer, Map<Character, List<Integer>>> groups = new TreeMap<>();
+		for(int i = 0; i < entries.size(); i++) {
+			String cs = entries.get(i).commandString;
+			groups.computeIfAbsent(cs.length(), k -> new TreeMap<>()).computeIfAbsent(cs.charAt(0), k -> new ArrayList<>()).add(i);
+		}
+		
+		sb.append("\tprivate FiCommand match(String input, int length) {\n");
+		sb.append("\t\tswitch(length) {\n");
+		
+		for(Map.Entry<Integer, Map<Character, List<Integer>>> length : groups.entrySet()) {
+			sb.append("\t\tcase ").append(length.getKey()).append(":\n");
+			sb.append("\t\t\tswitch(input.charAt(0)) {\n");
+			
+			for(Map.Entry<Character, List<Integer>> first : length.getValue().entrySet()) {
+				sb.append("\t\t\tcase ").append(literal(first.getKey())).append(":\n");
+				
+				for(int i : first.getValue()) {
+					sb.append("\t\t\t\tif(input.startsWith(").append(literal(entries.get(i).commandString)).append("))\n");
+					sb.append("\t\t\t\t\treturn commands[").append(i).append("];\n");
+				}
+				
+				sb.append("\t\t\t\treturn null;\n");
+			}
+			
+			sb.append("\t\t\tdefault:\n");
+			sb.append("\t\t\t\treturn null;\n");
+			sb.append("\t\t\t}\n");
+		}
+		
+		sb.append("\t\tdefault:\n");
+		sb.append("\t\t\treturn null;\n");
+		sb.append("\t\t}\n");
+		sb.append("\t}\n");
+	}
+	
+	private static String literal(String s) {
+		StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+		for(int i = 0; i < s.length(); i++)
+			escape(sb, s.charAt(i), '"');
+		
+		return sb.append('"').toString();
+	}
+	
+	private static String literal(char c) {
+		return escape(new StringBuilder(8).append('\''), c, '\'').append('\'').toString();
+	}
+	
+	/**
+	 * Escapes a character for a Java literal, writing anything that isn't printable ASCII as a unicode escape.
+	 */
+	private static StringBuilder escape(StringBuilder sb, char c, char quote) {
+		if(c == quote || c == '\\')
+			sb.append('\\').append(c);
+		else if(c == '\n')
+			sb.append("\\n");
+		else if(c == '\t')
+			sb.append("\\t");
+		else if(c < 0x20 || c > 0x7e)
+			sb.append(String.format("\\u%04x", (int) c));
+		else
+			sb.append(c);
+		
+		return sb;
+	}
+	
+	private void error(Element e, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, e);
+	}
+	
+	/**
+	 * A command declared with FiCommandDef.
+	 */
+	private static final class Entry {
+		
+		final Element element;
+		final String commandString;
+		final String description;
+		final boolean isVisible;
+		final ArrayList<Arg> args = new ArrayList<>();
+		
+		//Only used to check the arguments, the same way the generated code will declare them
+		final FiSchema schema = new FiSchema();
+		
+		Entry(Element element, String commandString, String description, boolean isVisible) {
+			this.element = element;
+			this.commandString = commandString;
+			this.description = description;
+			this.isVisible = isVisible;
+		}
+	}
+	
+	/**
+	 * An argument declared with FiArg. Values that weren't written are null.
+	 */
+	private static final class Arg {
+		
+		String name;
+		int type;
+		boolean isFlag;
+		Boolean required;
+		String defaultValue;
+		String[] values;
+		
+		void declare(FiSchema schema) {
+			FiSchema.Option o = isFlag ? schema.flag(name, type) : schema.positional(name, type);
+			
+			if(values != null)
+				o.values(values);
+			if(defaultValue != null)
+				o.defaultValue(defaultValue);
+			if(required != null)
+				o.required(required);
+		}
+	}
+}
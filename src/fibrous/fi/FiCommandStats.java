@@ -0,0 +1,171 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+/**
+ * A snapshot of the metrics of a single {@link FiCommand}, as returned by {@link FiMetrics#snapshot()}.
+ * The values don't change after the snapshot has been taken.
+ * All durations are in nanoseconds.
+ */
+public final class FiCommandStats {
+	
+	private final String commandString;
+	private final long invocations;
+	private final long errors;
+	private final long cacheHits;
+	private final long[] states;
+	private final long totalNanos;
+	private final long maxNanos;
+	private final long[] buckets;
+	private final long bucketTotal;
+	
+	FiCommandStats(FiCommandMetrics metrics) {
+		commandString = metrics.commandString;
+		invocations = metrics.invocations.sum();
+		errors = metrics.errors.sum();
+		cacheHits = metrics.cacheHits.sum();
+		totalNanos = metrics.totalNanos.sum();
+		maxNanos = metrics.maxNanos.get();
+		
+		states = new long[metrics.states.length];
+		for(int i = 0; i < states.length; i++)
+			states[i] = metrics.states[i].sum();
+		
+		long total = 0;
+		buckets = new long[metrics.buckets.length];
+		for(int i = 0; i < buckets.length; i++) {
+			buckets[i] = metrics.buckets[i].sum();
+			total += buckets[i];
+		}
+		bucketTotal = total;
+	}
+	
+	/**
+	 * Returns the commandString of the command.
+	 * @return
+	 */
+	public String getCommandString() {
+		return commandString;
+	}
+	
+	/**
+	 * Returns how many times the command has been executed.
+	 * Invocations answered from the {@link FiResultCache} aren't executions, and are counted by {@link #getCacheHits()} instead.
+	 * @return
+	 */
+	public long getInvocations() {
+		return invocations;
+	}
+	
+	/**
+	 * Returns how many of the invocations threw an exception.
+	 * @return
+	 */
+	public long getErrors() {
+		return errors;
+	}
+	
+	/**
+	 * Returns how many invocations were answered from the {@link FiResultCache}.
+	 * They are counted in the VALID state, but not in the execution times.
+	 * @return
+	 */
+	public long getCacheHits() {
+		return cacheHits;
+	}
+	
+	/**
+	 * Returns how many invocations of the command resulted in the given state.
+	 * @param state One of the FiState state values, such as FiState.VALID.
+	 * @return
+	 */
+	public long getCount(int state) {
+		if(state < 0 || state >= states.length)
+			return 0;
+		
+		return states[state];
+	}
+	
+	/**
+	 * Returns the total time spent executing the command.
+	 * @return
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+	
+	/**
+	 * Returns the average time the command took to execute.
+	 * @return
+	 */
+	public long getMeanNanos() {
+		return invocations == 0 ? 0 : totalNanos / invocations;
+	}
+	
+	/**
+	 * Returns the longest time the command took to execute.
+	 * @return
+	 */
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+	
+	/**
+	 * Returns an estimate of the execution time that the given fraction of invocations finished within.
+	 * The estimate is the upper bound of the histogram bucket the percentile falls in, and is never more than the maximum.
+	 * @param percentile Between 0 and 100, such as 99.9.
+	 * @return
+	 */
+	public long getPercentileNanos(double percentile) {
+		if(bucketTotal == 0)
+			return 0;
+		
+		long rank = (long) Math.ceil(bucketTotal * Math.min(Math.max(percentile, 0), 100) / 100.0);
+		if(rank < 1)
+			rank = 1;
+		
+		long seen = 0;
+		for(int i = 0; i < buckets.length; i++) {
+			seen += buckets[i];
+			if(seen >= rank)
+				return Math.min(FiCommandMetrics.upperBoundOf(i), maxNanos);
+		}
+		
+		return maxNanos;
+	}
+	
+	@Override
+	public String toString() {
+		return commandString + ": " + invocations + " calls, mean " + getMeanNanos() + "ns, p50 " + getPercentileNanos(50)
+				+ "ns, p99 " + getPercentileNanos(99) + "ns, max " + maxNanos + "ns";
+	}
+}
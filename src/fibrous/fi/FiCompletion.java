@@ -0,0 +1,100 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ways a partial line of input can be completed, as returned by {@link FiCLI#complete(String, FiSession, int)}.
+ * Every candidate replaces the input from {@link #getStart()} to its end,
+ * and starts with the text that it replaces, so completing only ever adds to the input.
+ */
+public final class FiCompletion {
+	
+	private final int start;
+	private final List<String> candidates;
+	private final String commonPrefix;
+	private final boolean hasMore;
+	
+	FiCompletion(int start, List<String> candidates, String commonPrefix, boolean hasMore) {
+		this.start = start;
+		this.candidates = Collections.unmodifiableList(candidates);
+		this.commonPrefix = commonPrefix;
+		this.hasMore = hasMore;
+	}
+	
+	/**
+	 * Returns the position in the input that the candidates replace from.
+	 * @return
+	 */
+	public int getStart() {
+		return start;
+	}
+	
+	/**
+	 * Returns the candidates, in alphabetical order for commands, or in the order they were declared for argument values.
+	 * @return
+	 */
+	public List<String> getCandidates() {
+		return candidates;
+	}
+	
+	/**
+	 * Returns the longest text that every candidate starts with, including any candidates that weren't returned because of the limit.
+	 * This is what the input can be completed to without choosing between candidates.
+	 * @return
+	 */
+	public String getCommonPrefix() {
+		return commonPrefix;
+	}
+	
+	/**
+	 * Returns true if there were more candidates than the limit allowed.
+	 * @return
+	 */
+	public boolean hasMore() {
+		return hasMore;
+	}
+	
+	/**
+	 * Returns the length of the text that two Strings both start with.
+	 */
+	static int commonLength(String a, String b) {
+		int n = Math.min(a.length(), b.length());
+		int i = 0;
+		while(i < n && a.charAt(i) == b.charAt(i))
+			i++;
+		
+		return i;
+	}
+}
@@ -49,10 +49,13 @@ public class FiConsoleIO implements FiInputStream, FiOutputStream {
 	}
 	
 	/**
-	 * Just reads a line from the console
+	 * Just reads a line from the console, or returns null once the console input has ended
 	 */
 	@Override
 	public String readLine() {
+		if(!console.hasNextLine())
+			return null;
+		
 		return console.nextLine();
 	}
 
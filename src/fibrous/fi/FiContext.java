@@ -0,0 +1,155 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+/**
+ * Everything a {@link FiCommand} needs to know about a single invocation.
+ * A new FiContext is passed to {@link FiCommand#execute(FiContext)} every time a command runs,
+ * so the same command object can be executed by many threads at once without sharing any argument state.
+ * The exception is an {@link FiDispatcher}, which reuses one context for every command it dispatches,
+ * so commands shouldn't keep a context after they return.
+ */
+public final class FiContext {
+	
+	private FiCommand command;
+	private String input;
+	private final FiArguments arguments;
+	private FiOptions options;
+	private FiSession session;
+	private FiInputStream iStream;
+	private FiOutputStream oStream;
+	
+	//Only kept by a reusable context, to be filled in by each command that has a schema
+	final FiOptions reusableOptions;
+	
+	/**
+	 * Only supposed to be instantiated by an FiCLI object when a command is dispatched.
+	 * @param command
+	 * @param input
+	 * @param arguments
+	 * @param options
+	 * @param session
+	 * @param is
+	 * @param os
+	 */
+	FiContext(FiCommand command, String input, FiArguments arguments, FiOptions options, FiSession session, FiInputStream is, FiOutputStream os) {
+		this.command = command;
+		this.input = input;
+		this.arguments = arguments;
+		this.options = options;
+		this.session = session;
+		iStream = is;
+		oStream = os;
+		reusableOptions = null;
+	}
+	
+	/**
+	 * Creates a context that is filled in again for every invocation, with its own argument and option buffers.
+	 */
+	FiContext() {
+		arguments = new FiArguments();
+		reusableOptions = new FiOptions();
+	}
+	
+	/**
+	 * Fills in a reusable context for the next invocation.
+	 * The arguments, and the options if there are any, have already been filled in.
+	 */
+	void reuse(FiCommand command, String input, FiOptions options, FiSession session, FiInputStream is, FiOutputStream os) {
+		this.command = command;
+		this.input = input;
+		this.options = options;
+		this.session = session;
+		iStream = is;
+		oStream = os;
+	}
+	
+	/**
+	 * Returns the command being executed.
+	 * @return
+	 */
+	public FiCommand getCommand() {
+		return command;
+	}
+	
+	/**
+	 * Returns the raw line of input that invoked the command.
+	 * @return
+	 */
+	public String getInput() {
+		return input;
+	}
+	
+	/**
+	 * Returns the arguments that followed the commandString.
+	 * @return
+	 */
+	public FiArguments getArguments() {
+		return arguments;
+	}
+	
+	/**
+	 * Returns the arguments converted according to the command's {@link FiSchema}.
+	 * null if the command has no schema.
+	 * @return
+	 */
+	public FiOptions getOptions() {
+		return options;
+	}
+	
+	/**
+	 * Returns the {@link FiSession} that invoked the command.
+	 * @return
+	 */
+	public FiSession getSession() {
+		return session;
+	}
+	
+	/**
+	 * Returns the {@link FiInputStream} that the command can read further input from.
+	 * In a pipeline, this is the output of the previous command, and readLine() returns null once that command has finished.
+	 * Otherwise it is the session's input, which may be null.
+	 * @return
+	 */
+	public FiInputStream getInputStream() {
+		return iStream;
+	}
+	
+	/**
+	 * Returns the {@link FiOutputStream} that the command should write its output to.
+	 * This is usually the session's output, but asynchronous commands write to a buffer that is passed on to the session when they finish.
+	 * @return
+	 */
+	public FiOutputStream getOutputStream() {
+		return oStream;
+	}
+}
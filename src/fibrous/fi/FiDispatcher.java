@@ -0,0 +1,86 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.Collections;
+
+/**
+ * Dispatches lines of input to an {@link FiCLI} without creating any garbage, for latency sensitive callers.
+ * The same {@link FiState} is returned from every call, and the same {@link FiContext}, arguments, and options are filled in for every command,
+ * so once a command has been dispatched a few times, matching and dispatching it again doesn't allocate anything outside of the command itself.
+ * To stay that way, commands should override {@link FiCommand#execute(FiContext)} and read their arguments with
+ * {@link FiArguments#view(int)} or their options with the primitive getters of {@link FiOptions}.
+ * STRING options, DOUBLE options with more than 15 digits, invalid input, pipelines, menu paths, and lazily added commands still allocate.
+ * Commands with a {@link FiCommand#cacheTTL} also build a String key for the {@link FiResultCache} every time they are dispatched.
+ * An FiDispatcher is not thread safe, so create one for each thread.
+ */
+public final class FiDispatcher {
+	
+	private final FiCLI cli;
+	private final FiSession session;
+	private final FiState state;
+	private final FiContext context;
+	
+	/**
+	 * Creates a dispatcher for the FiCLI's own session.
+	 * @param cli
+	 */
+	public FiDispatcher(FiCLI cli) {
+		this(cli, cli.getSession());
+	}
+	
+	/**
+	 * Creates a dispatcher for the given session.
+	 * @param cli
+	 * @param session The session that input is dispatched for, and that output goes to.
+	 */
+	public FiDispatcher(FiCLI cli, FiSession session) {
+		this.cli = cli;
+		this.session = session;
+		state = new FiState(FiState.VALID, null);
+		context = new FiContext();
+	}
+	
+	/**
+	 * Matches a line of input and executes it, in the same way as {@link FiCLI#processCommand(String, FiSession)}.
+	 * @param commandString
+	 * @return The state of the line. This is the same object every time, so read it before dispatching the next line.
+	 */
+	public FiState dispatch(String commandString) {
+		state.input = commandString;
+		state.message = null;
+		state.suggestions = Collections.emptyList();
+		
+		state.state = cli.dispatch(commandString, session, state, context, true);
+		return state;
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connects an {@link FiCLI} to a reactive stream, turning a publisher of command lines into a publisher of the {@link FiState} of each one.
+ * Lines are processed one at a time, in order, as processCommand(String, FiSession) would.
+ * Only one line is requested at a time, and by default publishing a state waits for as long as any subscriber's buffer is full,
+ * so a slow subscriber slows down how fast lines are requested instead of states piling up.
+ * That also means one stalled subscriber stops every line from being processed.
+ * Give a timeout to stop waiting instead; a state that still doesn't fit in time is dropped for that subscriber.
+ * States processed while nothing is subscribed are dropped as well.
+ * Dropped states are counted by {@link #getDroppedStates()} and passed to {@link #handleDroppedState(FiState)}.
+ * If a command throws an exception, the lines are cancelled and subscribers receive the exception through onError().
+ */
+public class FiFlowProcessor implements Flow.Processor<String, FiState> {
+	
+	private final FiCLI cli;
+	private final FiSession session;
+	private final SubmissionPublisher<FiState> publisher;
+	private final long timeout;
+	private final LongAdder dropped;
+	private Flow.Subscription subscription;
+	
+	/**
+	 * Creates a processor that uses the FiCLI's executor to deliver states, with the default buffer size.
+	 * @param cli
+	 * @param session The session that the lines are processed for, and that command output goes to.
+	 */
+	public FiFlowProcessor(FiCLI cli, FiSession session) {
+		this(cli, session, cli.getExecutor(), Flow.defaultBufferSize());
+	}
+	
+	/**
+	 * Creates a processor that waits for as long as it takes whenever a subscriber's buffer is full.
+	 * @param cli
+	 * @param session The session that the lines are processed for, and that command output goes to.
+	 * @param executor Delivers states to subscribers.
+	 * @param bufferSize The most states held for each subscriber before the processor waits.
+	 */
+	public FiFlowProcessor(FiCLI cli, FiSession session, Executor executor, int bufferSize) {
+		this(cli, session, executor, bufferSize, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Creates a processor that stops waiting for a subscriber whose buffer is full after the timeout, and drops the state for that subscriber.
+	 * @param cli
+	 * @param session The session that the lines are processed for, and that command output goes to.
+	 * @param executor Delivers states to subscribers.
+	 * @param bufferSize The most states held for each subscriber before the processor waits.
+	 * @param timeout How long to wait for room in a subscriber's buffer. 0 drops the state right away.
+	 * @param unit
+	 */
+	public FiFlowProcessor(FiCLI cli, FiSession session, Executor executor, int bufferSize, long timeout, TimeUnit unit) {
+		this.cli = cli;
+		this.session = session;
+		this.timeout = unit.toNanos(timeout);
+		publisher = new SubmissionPublisher<>(executor, bufferSize);
+		dropped = new LongAdder();
+	}
+	
+	/**
+	 * Returns how many states have been dropped, counting a state once for each subscriber that didn't receive it,
+	 * or once if nothing was subscribed.
+	 * @return
+	 */
+	public long getDroppedStates() {
+		return dropped.sum();
+	}
+	
+	/**
+	 * Called with each state that is dropped, after it has been counted.
+	 * This may be called once for each subscriber that didn't receive the state.
+	 * Override this to log or otherwise report dropped states. By default, it does nothing.
+	 * @param state
+	 */
+	protected void handleDroppedState(FiState state) {
+	}
+	
+	@Override
+	public void subscribe(Flow.Subscriber<? super FiState> subscriber) {
+		publisher.subscribe(subscriber);
+	}
+	
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		
+		//Only one publisher of lines at a time
+		if(this.subscription != null) {
+			subscription.cancel();
+			return;
+		}
+		
+		this.subscription = subscription;
+		subscription.request(1);
+	}
+	
+	@Override
+	public void onNext(String line) {
+		try {
+			publish(cli.processCommand(line, session));
+		} catch(RuntimeException e) {
+			subscription.cancel();
+			publisher.closeExceptionally(e);
+			return;
+		}
+		
+		subscription.request(1);
+	}
+	
+	@Override
+	public void onError(Throwable throwable) {
+		publisher.closeExceptionally(throwable);
+	}
+	
+	@Override
+	public void onComplete() {
+		publisher.close();
+	}
+	
+	private void publish(FiState state) {
+		if(!publisher.hasSubscribers()) {
+			drop(state);
+			return;
+		}
+		
+		if(timeout == Long.MAX_VALUE)
+			publisher.submit(state);
+		else
+			publisher.offer(state, timeout, TimeUnit.NANOSECONDS, (subscriber, s) -> {
+				drop(s);
+				return false;
+			});
+	}
+	
+	private void drop(FiState state) {
+		dropped.increment();
+		handleDroppedState(state);
+	}
+}
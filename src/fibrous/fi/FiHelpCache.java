@@ -0,0 +1,242 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The rendered list of commands that the {@link FiCLI} shows when the listCommandsString is input.
+ * Every row is rendered once and kept until the commands change,
+ * so listing thousands of commands doesn't rebuild thousands of Strings each time.
+ * Also handles filtering the list by a pattern, and splitting it into pages.
+ */
+final class FiHelpCache {
+	
+	//The exit and back commands are listed first, and aren't sorted with the other commands
+	private final int specialRows;
+	private final String[] names;
+	private final String[] rows;
+	
+	//The registry of the FiCLI that the rows were rendered from
+	private final Object source;
+	
+	private FiHelpCache(int specialRows, String[] names, String[] rows, Object source) {
+		this.specialRows = specialRows;
+		this.names = names;
+		this.rows = rows;
+		this.source = source;
+	}
+	
+	/**
+	 * Renders every row of the command list.
+	 * @param specialNames The exit and back strings that are currently allowed.
+	 * @param specialDescriptions Their descriptions.
+	 * @param commandList Every configured command, in alphabetical order.
+	 * @param spacing The column that descriptions start at.
+	 * @param source The registry that the commands came from, which is replaced whenever the commands change.
+	 * @return
+	 */
+	static FiHelpCache build(String[] specialNames, String[] specialDescriptions, List<FiCommand> commandList, int spacing, Object source) {
+		int n = commandList.size();
+		
+		String[] names = new String[specialNames.length + n];
+		String[] rows = new String[specialNames.length + n];
+		int count = 0;
+		
+		for(int i = 0; i < specialNames.length; i++) {
+			names[count] = specialNames[i];
+			rows[count] = render(specialNames[i], specialDescriptions[i], spacing);
+			count++;
+		}
+		
+		for(int i = 0; i < n; i++) {
+			FiCommand c = commandList.get(i);
+			
+			//If a command isn't visible, it won't be listed, but it can still be executed.
+			if(!c.isVisible)
+				continue;
+			
+			names[count] = c.commandString;
+			rows[count] = render(c.commandString, c.commandDescription, spacing);
+			count++;
+		}
+		
+		return new FiHelpCache(specialNames.length, Arrays.copyOf(names, count), Arrays.copyOf(rows, count), source);
+	}
+	
+	/**
+	 * Checks that the rows were rendered from the given registry.
+	 * Only the registry itself is compared, so this costs the same however many commands there are.
+	 * @param registry
+	 * @return
+	 */
+	boolean isCurrent(Object registry) {
+		return source == registry;
+	}
+	
+	/**
+	 * Lists the rows that match a pattern, one page at a time.
+	 * @param os Where the list is written.
+	 * @param pattern Only rows whose command string matches are listed, or every row if null.
+	 * @param page Which page to list, starting at 1.
+	 * @param pageSize How many rows are on a page, or 0 to list every row.
+	 * @param listCommandsString Used to tell the user how to see the next page.
+	 */
+	void list(FiOutputStream os, String pattern, int page, int pageSize, String listCommandsString) {
+		int[] matches = null;
+		int start = 0;
+		int end = rows.length;
+		int total;
+		
+		if(pattern == null) {
+			total = rows.length;
+		} else if(isPrefixPattern(pattern)) {
+			//Sorted rows can be narrowed down to a range without looking at every row
+			String prefix = pattern.endsWith("*") ? pattern.substring(0, pattern.length() - 1) : pattern;
+			matches = findPrefix(prefix);
+			total = matches.length;
+		} else {
+			matches = findGlob(pattern);
+			total = matches.length;
+		}
+		
+		if(total == 0) {
+			os.println("No commands match \"" + pattern + "\"");
+			return;
+		}
+		
+		int pages = 1;
+		if(pageSize > 0) {
+			pages = (total + pageSize - 1) / pageSize;
+			page = Math.min(Math.max(page, 1), pages);
+			start = (page - 1) * pageSize;
+			end = Math.min(start + pageSize, total);
+		} else {
+			end = total;
+		}
+		
+		os.println("\nAvailable Commands:");
+		
+		for(int i = start; i < end; i++)
+			os.println(rows[matches == null ? i : matches[i]]);
+		
+		if(page < pages) {
+			String next = listCommandsString + (pattern == null ? "" : " " + pattern) + " " + (page + 1);
+			os.println("Page " + page + " of " + pages + ", enter \"" + next + "\" for more");
+		}
+	}
+	
+	private int[] findPrefix(String prefix) {
+		int[] found = new int[rows.length];
+		int count = 0;
+		
+		for(int i = 0; i < specialRows; i++) {
+			if(names[i].startsWith(prefix))
+				found[count++] = i;
+		}
+		
+		//Find the first command that sorts at or after the prefix
+		int low = specialRows;
+		int high = names.length;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(names[mid].compareTo(prefix) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		
+		for(int i = low; i < names.length && names[i].startsWith(prefix); i++)
+			found[count++] = i;
+		
+		return Arrays.copyOf(found, count);
+	}
+	
+	private int[] findGlob(String pattern) {
+		int[] found = new int[rows.length];
+		int count = 0;
+		
+		for(int i = 0; i < names.length; i++) {
+			if(globMatches(names[i], pattern))
+				found[count++] = i;
+		}
+		
+		return Arrays.copyOf(found, count);
+	}
+	
+	/**
+	 * A pattern without wildcards, or with a single '*' at the end, matches every command string that starts with it.
+	 */
+	private static boolean isPrefixPattern(String pattern) {
+		int star = pattern.indexOf('*');
+		return star < 0 || star == pattern.length() - 1;
+	}
+	
+	/**
+	 * Matches a command string against a pattern where '*' stands for any number of characters.
+	 */
+	static boolean globMatches(String s, String pattern) {
+		int si = 0;
+		int pi = 0;
+		int starP = -1;
+		int starS = 0;
+		
+		while(si < s.length()) {
+			if(pi < pattern.length() && pattern.charAt(pi) == '*') {
+				starP = pi++;
+				starS = si;
+			} else if(pi < pattern.length() && pattern.charAt(pi) == s.charAt(si)) {
+				pi++;
+				si++;
+			} else if(starP >= 0) {
+				//Let the last '*' swallow one more character and try again
+				pi = starP + 1;
+				si = ++starS;
+			} else
+				return false;
+		}
+		
+		while(pi < pattern.length() && pattern.charAt(pi) == '*')
+			pi++;
+		
+		return pi == pattern.length();
+	}
+	
+	/**
+	 * Adds an equalizing amount of spacing so the command descriptions can all line up and look nice.
+	 */
+	private static String render(String name, String description, int spacing) {
+		int spaces = spacing - name.length();
+		return name + (spaces > 0 ? " ".repeat(spaces) : "") + description;
+	}
+}
@@ -0,0 +1,440 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * A history of entered lines that is kept in a fixed size, memory mapped file, so it survives restarts.
+ * Lines are written straight into the mapped file, so adding a line doesn't make any system calls,
+ * and once the file is full the oldest lines are overwritten.
+ * Every line is also kept decoded in memory, so searching never has to read or decode the file.
+ * Searches use an index of every 1, 2, and 3 character sequence in the lines, so only lines that can match are compared.
+ * One FiHistory can be shared by the {@link FiLineEditor} of every session, so lines entered in one session can be recalled in another.
+ * Only one process can have a history file open at a time.
+ */
+public class FiHistory implements Closeable {
+	
+	private static final int MAGIC = 0x46694869;
+	private static final int VERSION = 1;
+	
+	//Magic number, version, capacity, number of lines, offset of the oldest line, and offset of the next line
+	private static final int HEADER = 32;
+	private static final int COUNT = 12;
+	private static final int HEAD = 16;
+	private static final int TAIL = 24;
+	
+	//Marks the end of the used part of the ring, when a line didn't fit before the end of the file
+	private static final int WRAP = -1;
+	
+	private final FileChannel channel;
+	private final FileLock lock;
+	private final MappedByteBuffer map;
+	private final int capacity;
+	
+	private int count;
+	private int head;
+	private int tail;
+	
+	//The lines, oldest first, in a ring of their own
+	private String[] lines;
+	private int first;
+	
+	//How many lines have been removed, so every line has a sequence number that doesn't change: removed + its position
+	private long removed;
+	
+	//The sequence numbers of the lines that contain each sequence of up to GRAM characters, oldest first.
+	//Keys starting with START are the first characters of a line instead, for prefix searches.
+	private static final int GRAM = 3;
+	private static final char START = '\n';
+	private final HashMap<String, Postings> index = new HashMap<>();
+	
+	private FiHistory(FileChannel channel, FileLock lock, MappedByteBuffer map, int capacity) {
+		this.channel = channel;
+		this.lock = lock;
+		this.map = map;
+		this.capacity = capacity;
+		lines = new String[64];
+	}
+	
+	/**
+	 * Opens a history file, creating it if it doesn't exist.
+	 * @param file
+	 * @param capacity How many bytes of lines the file holds. Ignored if the file already exists, since it keeps its original size.
+	 * @return
+	 * @throws IOException If the file can't be opened, is already open, or isn't a history file.
+	 */
+	public static FiHistory open(Path file, int capacity) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		
+		try {
+			FileLock lock;
+			try {
+				lock = channel.tryLock();
+			} catch(OverlappingFileLockException e) {
+				lock = null;
+			}
+			
+			if(lock == null)
+				throw new IOException(file + " is already open");
+			
+			boolean isNew = channel.size() == 0;
+			if(!isNew)
+				capacity = (int) Math.min(channel.size() - HEADER, Integer.MAX_VALUE - HEADER);
+			
+			if(capacity < 64)
+				throw new IllegalArgumentException("A history needs at least 64 bytes");
+			
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) capacity);
+			FiHistory history = new FiHistory(channel, lock, map, capacity);
+			
+			if(isNew) {
+				map.putInt(0, MAGIC);
+				map.putInt(4, VERSION);
+				map.putInt(8, capacity);
+				history.writeHeader();
+			} else {
+				history.load(file);
+			}
+			
+			return history;
+		} catch(IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Adds a line to the end of the history.
+	 * Blank lines, lines that are the same as the last one, and lines too long to fit in a quarter of the file are not added.
+	 * @param line
+	 */
+	public synchronized void add(String line) {
+		if(line.isBlank() || (size() > 0 && get(size() - 1).equals(line)))
+			return;
+		
+		byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+		int need = bytes.length + 8;
+		if(need > capacity / 4)
+			return;
+		
+		//The line doesn't fit before the end of the file, so it goes at the start instead
+		if(tail + need > capacity) {
+			while(count > 0 && head >= tail)
+				removeOldest();
+			
+			if(tail + 4 <= capacity)
+				map.putInt(HEADER + tail, WRAP);
+			
+			tail = 0;
+			if(count == 0)
+				head = 0;
+		}
+		
+		//Make room by overwriting the oldest lines
+		while(count > 0 && head >= tail && head < tail + need)
+			removeOldest();
+		
+		map.putInt(HEADER + tail, bytes.length);
+		map.put(HEADER + tail + 4, bytes);
+		map.putInt(HEADER + tail + 4 + bytes.length, bytes.length);
+		
+		if(count == 0)
+			head = tail;
+		
+		tail += need;
+		count++;
+		writeHeader();
+		
+		addLine(line);
+	}
+	
+	/**
+	 * Returns the number of lines in the history.
+	 * @return
+	 */
+	public synchronized int size() {
+		return count;
+	}
+	
+	/**
+	 * Returns a line from the history.
+	 * @param i 0 for the oldest line, up to size() - 1 for the newest.
+	 * @return
+	 */
+	public synchronized String get(int i) {
+		if(i < 0 || i >= count)
+			throw new IndexOutOfBoundsException(i);
+		
+		return lines[(first + i) % lines.length];
+	}
+	
+	/**
+	 * Finds the newest line before a position that contains the text, for reverse searching.
+	 * @param text
+	 * @param before Only lines older than this position are searched. Use size() to search every line.
+	 * @return The position of the line, or -1 if no line contains the text.
+	 */
+	public synchronized int search(String text, int before) {
+		if(text.isEmpty())
+			return Math.min(before, count) - 1;
+		
+		//Every line that contains the text contains each of its sequences, so only the lines of the rarest one need to be compared
+		Postings rarest = null;
+		for(int i = 0; i + Math.min(GRAM, text.length()) <= text.length(); i++) {
+			Postings p = index.get(text.substring(i, i + Math.min(GRAM, text.length())));
+			if(p == null)
+				return -1;
+			
+			if(rarest == null || p.size < rarest.size)
+				rarest = p;
+		}
+		
+		for(int k = rarest.lastBefore(removed + Math.min(before, count)); k >= 0; k--) {
+			int i = (int) (rarest.get(k) - removed);
+			if(lines[(first + i) % lines.length].contains(text))
+				return i;
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Finds the newest line before a position that starts with the prefix.
+	 * @param prefix
+	 * @param before Only lines older than this position are searched. Use size() to search every line.
+	 * @return The position of the line, or -1 if no line starts with the prefix.
+	 */
+	public synchronized int searchPrefix(String prefix, int before) {
+		if(prefix.isEmpty())
+			return Math.min(before, count) - 1;
+		
+		Postings p = index.get(START + prefix.substring(0, Math.min(GRAM, prefix.length())));
+		if(p == null)
+			return -1;
+		
+		for(int k = p.lastBefore(removed + Math.min(before, count)); k >= 0; k--) {
+			int i = (int) (p.get(k) - removed);
+			if(lines[(first + i) % lines.length].startsWith(prefix))
+				return i;
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Writes the history to the disk.
+	 * This isn't needed for the lines to survive the process ending, only for them to survive the whole system going down.
+	 */
+	public synchronized void force() {
+		map.force();
+	}
+	
+	/**
+	 * Writes the history to the disk and closes the file.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		map.force();
+		
+		try {
+			lock.release();
+		} finally {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Reads every line of an existing file into memory.
+	 */
+	private void load(Path file) throws IOException {
+		if(map.getInt(0) != MAGIC || map.getInt(4) != VERSION)
+			throw new IOException(file + " is not a history file");
+		
+		int total = map.getInt(COUNT);
+		head = (int) map.getLong(HEAD);
+		tail = (int) map.getLong(TAIL);
+		
+		if(total < 0 || head < 0 || head > capacity || tail < 0 || tail > capacity)
+			throw new IOException(file + " is damaged");
+		
+		int offset = head;
+		for(int i = 0; i < total; i++) {
+			int length = offset + 4 <= capacity ? map.getInt(HEADER + offset) : WRAP;
+			if(length == WRAP) {
+				offset = 0;
+				length = map.getInt(HEADER);
+			}
+			
+			if(length < 0 || offset + length + 8 > capacity)
+				throw new IOException(file + " is damaged");
+			
+			byte[] bytes = new byte[length];
+			map.get(HEADER + offset + 4, bytes);
+			count++;
+			addLine(new String(bytes, StandardCharsets.UTF_8));
+			
+			offset += length + 8;
+		}
+	}
+	
+	private void removeOldest() {
+		int length = head + 4 <= capacity ? map.getInt(HEADER + head) : WRAP;
+		
+		//Skipping the end marker doesn't remove a line
+		if(length == WRAP) {
+			head = 0;
+			return;
+		}
+		
+		head += length + 8;
+		count--;
+		
+		//The oldest line is first in every list it is in
+		for(String gram : grams(lines[first])) {
+			Postings p = index.get(gram);
+			p.removeFirst();
+			if(p.size == 0)
+				index.remove(gram);
+		}
+		
+		removed++;
+		lines[first] = null;
+		first = (first + 1) % lines.length;
+	}
+	
+	/**
+	 * Keeps a line in memory, after count has been increased to include it.
+	 */
+	private void addLine(String line) {
+		int size = count - 1;
+		
+		if(size == lines.length) {
+			String[] grown = new String[lines.length * 2];
+			for(int i = 0; i < size; i++)
+				grown[i] = lines[(first + i) % lines.length];
+			
+			lines = grown;
+			first = 0;
+		}
+		
+		lines[(first + size) % lines.length] = line;
+		
+		long sequence = removed + size;
+		for(String gram : grams(line))
+			index.computeIfAbsent(gram, g -> new Postings()).add(sequence);
+	}
+	
+	/**
+	 * Returns the keys a line is indexed under: every sequence of 1 to GRAM characters, and its first 1 to GRAM characters.
+	 */
+	private static HashSet<String> grams(String line) {
+		HashSet<String> grams = new HashSet<>();
+		
+		for(int i = 0; i < line.length(); i++) {
+			for(int n = 1; n <= GRAM && i + n <= line.length(); n++)
+				grams.add(line.substring(i, i + n));
+		}
+		
+		for(int n = 1; n <= GRAM && n <= line.length(); n++)
+			grams.add(START + line.substring(0, n));
+		
+		return grams;
+	}
+	
+	/**
+	 * The sequence numbers of the lines that contain one key, in increasing order.
+	 * Lines are only added at the end and removed from the start, so they are kept in a ring.
+	 */
+	private static final class Postings {
+		
+		private long[] sequences = new long[4];
+		private int start;
+		int size;
+		
+		void add(long sequence) {
+			if(size == sequences.length) {
+				long[] grown = new long[sequences.length * 2];
+				for(int i = 0; i < size; i++)
+					grown[i] = get(i);
+				
+				sequences = grown;
+				start = 0;
+			}
+			
+			sequences[(start + size) % sequences.length] = sequence;
+			size++;
+		}
+		
+		void removeFirst() {
+			start = (start + 1) % sequences.length;
+			size--;
+		}
+		
+		long get(int i) {
+			return sequences[(start + i) % sequences.length];
+		}
+		
+		/**
+		 * Returns the index of the last sequence number below the limit, or -1 if there isn't one.
+		 */
+		int lastBefore(long limit) {
+			int low = 0;
+			int high = size;
+			while(low < high) {
+				int mid = (low + high) >>> 1;
+				if(get(mid) < limit)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			
+			return low - 1;
+		}
+	}
+	
+	private void writeHeader() {
+		map.putInt(COUNT, count);
+		map.putLong(HEAD, head);
+		map.putLong(TAIL, tail);
+	}
+}
@@ -39,6 +39,8 @@ package fibrous.fi;
 public interface FiInputStream {
 	/**
 	 * Must return a line containing a command.
+	 * Returns null once the input has ended, such as at the end of a file or when a connection is closed.
+	 * The {@link FiCLI} then returns the EXIT state instead of processing a line.
 	 */
 	public String readLine();
 }
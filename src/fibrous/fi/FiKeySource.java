@@ -0,0 +1,148 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * Implement an object using this interface so an {@link FiLineEditor} can receive single key presses, rather than whole lines.
+ * Printable keys are returned as their character, and the other keys that the editor understands are defined here.
+ * Use {@link #of(CharSequence)} to script the keys, such as when testing.
+ */
+@FunctionalInterface
+public interface FiKeySource {
+	
+	/**
+	 * Returned once there are no more keys.
+	 */
+	public final static int END_OF_INPUT = -1;
+	
+	/**
+	 * Finishes the line.
+	 */
+	public final static int ENTER = '\n';
+	
+	/**
+	 * Completes the input.
+	 */
+	public final static int TAB = '\t';
+	
+	/**
+	 * Removes the last character.
+	 */
+	public final static int BACKSPACE = 127;
+	
+	/**
+	 * Starts or continues a reverse search of the history (Ctrl-R).
+	 */
+	public final static int REVERSE_SEARCH = 18;
+	
+	/**
+	 * Recalls the previous line from the history.
+	 */
+	public final static int UP = 0x10001;
+	
+	/**
+	 * Recalls the next line from the history.
+	 */
+	public final static int DOWN = 0x10002;
+	
+	/**
+	 * Must wait for and return the next key, or END_OF_INPUT.
+	 */
+	public int nextKey();
+	
+	/**
+	 * Returns a source that produces the given keys, one character at a time, and then END_OF_INPUT.
+	 * @param keys Such as "get r\t\n".
+	 * @return
+	 */
+	public static FiKeySource of(CharSequence keys) {
+		int[] codes = new int[keys.length()];
+		for(int i = 0; i < codes.length; i++)
+			codes[i] = keys.charAt(i);
+		
+		return of(codes);
+	}
+	
+	/**
+	 * Returns a source that produces the given keys and then END_OF_INPUT.
+	 * @param keys
+	 * @return
+	 */
+	public static FiKeySource of(int... keys) {
+		int[] codes = keys.clone();
+		int[] position = new int[1];
+		
+		return () -> position[0] < codes.length ? codes[position[0]++] : END_OF_INPUT;
+	}
+	
+	/**
+	 * Returns a source that reads keys from a Reader, such as a terminal that has been put into raw mode.
+	 * Carriage returns are read as ENTER, the backspace character as BACKSPACE, and the arrow key escape sequences as UP and DOWN.
+	 * Other escape sequences are skipped.
+	 * @param reader
+	 * @return
+	 */
+	public static FiKeySource of(Reader reader) {
+		return () -> {
+			try {
+				while(true) {
+					int c = reader.read();
+					
+					if(c == '\r')
+						return ENTER;
+					if(c == '\b')
+						return BACKSPACE;
+					if(c != 27)
+						return c < 0 ? END_OF_INPUT : c;
+					
+					//An escape sequence, such as "ESC [ A" for the up arrow
+					if(reader.read() != '[')
+						continue;
+					
+					int code = reader.read();
+					if(code == 'A')
+						return UP;
+					if(code == 'B')
+						return DOWN;
+					if(code < 0)
+						return END_OF_INPUT;
+				}
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+	}
+}
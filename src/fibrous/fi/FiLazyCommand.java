@@ -0,0 +1,132 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.function.Supplier;
+
+/**
+ * Stands in for a command that hasn't been created yet.
+ * The real command is created by a {@link Supplier} the first time this command is input, and from then on the CLI dispatches to it directly,
+ * so its flags and its type, such as {@link FiMenu}, are the ones that count.
+ * Created through {@link FiCLI#addCommand(String, String, Supplier)}.
+ */
+final class FiLazyCommand extends FiCommand {
+	
+	private final Supplier<? extends FiCommand> supplier;
+	private volatile FiCommand command;
+	
+	FiLazyCommand(String commandString, String description, Supplier<? extends FiCommand> supplier) {
+		super(commandString);
+		this.supplier = supplier;
+		commandDescription = description;
+	}
+	
+	/**
+	 * Returns the real command, creating it if this is the first time it is needed.
+	 * @return
+	 */
+	FiCommand getCommand() {
+		FiCommand c = command;
+		if(c != null)
+			return c;
+		
+		synchronized(this) {
+			if(command == null) {
+				c = supplier.get();
+				if(c == null)
+					throw new IllegalStateException("The supplier for \"" + commandString + "\" did not create a command");
+				if(!commandString.equals(c.commandString))
+					throw new IllegalStateException("The supplier for \"" + commandString + "\" created \"" + c.commandString + "\" instead");
+				
+				//Settings made on the placeholder when it was added still apply, and afterwards it shows the real command's
+				if(c.schema == null)
+					c.schema = schema;
+				c.isAsync |= isAsync;
+				c.isIndependent |= isIndependent;
+				if(c.cacheTTL == 0)
+					c.cacheTTL = cacheTTL;
+				
+				schema = c.schema;
+				isAsync = c.isAsync;
+				isIndependent = c.isIndependent;
+				cacheTTL = c.cacheTTL;
+				
+				command = c;
+			}
+			
+			return command;
+		}
+	}
+	
+	/**
+	 * Returns the real command, or null if it hasn't been created yet.
+	 * @return
+	 */
+	FiCommand getCreated() {
+		return command;
+	}
+	
+	/**
+	 * Returns the command that input for a command found in the registry should go to, creating it if it is a placeholder.
+	 * @param command
+	 * @return
+	 */
+	static FiCommand resolve(FiCommand command) {
+		return command instanceof FiLazyCommand ? ((FiLazyCommand) command).getCommand() : command;
+	}
+	
+	/**
+	 * A schema set on the placeholder is used without creating the real command.
+	 * Otherwise the real command is created when it is dispatched, which is when it would be needed anyway.
+	 */
+	@Override
+	FiSchema getSchema() {
+		return schema != null ? schema : getCommand().schema;
+	}
+	
+	@Override
+	public void execute(FiContext context) {
+		FiCommand c = getCommand();
+		c.execute(new FiContext(c, context.getInput(), context.getArguments(), context.getOptions(), context.getSession(), context.getInputStream(), context.getOutputStream()));
+	}
+	
+	@Override
+	public void execute() {
+		FiCommand c = getCommand();
+		
+		synchronized(c) {
+			c.arguments.clear();
+			c.arguments.addAll(arguments);
+			c.execute();
+		}
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+/**
+ * An {@link FiInputStream} that builds each line from single key presses, so it can offer tab completion.
+ * Pressing tab completes the input as far as it can, using {@link FiCLI#complete(String, FiSession, int)}.
+ * When there is more than one way to continue, the candidates are listed and the input is shown again.
+ * With an {@link FiHistory}, the up and down keys recall earlier lines, and Ctrl-R searches backwards through them.
+ * Keys come from an {@link FiKeySource}, which can be a terminal in raw mode, or a script of keys for testing.
+ * Set an FiLineEditor as the input of an FiCLI or FiSession in place of a line based input:
+ * <pre>
+ * FiLineEditor editor = new FiLineEditor(cli, FiKeySource.of(reader), cli.getSession().getOutputStream());
+ * cli.setInput(editor);
+ * </pre>
+ */
+public class FiLineEditor implements FiInputStream {
+	
+	private final FiCLI cli;
+	private final FiKeySource keys;
+	private final FiOutputStream echo;
+	private FiSession session;
+	private int maxCandidates = 100;
+	private FiHistory history;
+	
+	private final StringBuilder line;
+	
+	//How many characters are on the current line of the display, including the caret
+	private int shown;
+	
+	//Which line of the history is being shown, and what was typed before moving into the history
+	private int historyPosition;
+	private String draft;
+	
+	/**
+	 * Creates a new line editor.
+	 * @param cli The FiCLI whose commands are completed.
+	 * @param keys Where the key presses come from.
+	 * @param echo Where the keys are shown as they are typed, along with completions. May be null if nothing should be shown.
+	 */
+	public FiLineEditor(FiCLI cli, FiKeySource keys, FiOutputStream echo) {
+		this.cli = cli;
+		this.keys = keys;
+		this.echo = echo;
+		session = cli.getSession();
+		line = new StringBuilder();
+	}
+	
+	/**
+	 * Sets the session that this editor is the input of, so the commands of the menu it is in are completed.
+	 * By default, this is the FiCLI's own session.
+	 * @param session
+	 */
+	public void setSession(FiSession session) {
+		this.session = session;
+	}
+	
+	/**
+	 * Sets the history that entered lines are added to, and that can be recalled with the up and down keys or searched with Ctrl-R.
+	 * The same history can be shared by the editors of many sessions.
+	 * @param history The history, or null for none.
+	 */
+	public void setHistory(FiHistory history) {
+		this.history = history;
+	}
+	
+	/**
+	 * Sets the most candidates that are listed at once.
+	 * @param max
+	 */
+	public void setMaxCandidates(int max) {
+		maxCandidates = max;
+	}
+	
+	/**
+	 * Finds the ways a partial line could be completed.
+	 * @param input
+	 * @return
+	 */
+	public FiCompletion complete(String input) {
+		return cli.complete(input, session, maxCandidates);
+	}
+	
+	/**
+	 * Reads keys until enter is pressed, and returns the line that was built.
+	 * @return The line, or null if the keys ran out before anything was typed.
+	 */
+	@Override
+	public String readLine() {
+		line.setLength(0);
+		shown = cli.getCaret(session).length();
+		historyPosition = history == null ? 0 : history.size();
+		draft = null;
+		
+		while(true) {
+			int key = keys.nextKey();
+			
+			//The search ends with the key that wasn't part of it, which only matters if it finishes the line
+			if(key == FiKeySource.REVERSE_SEARCH && history != null) {
+				key = reverseSearch();
+				if(key != FiKeySource.ENTER && key != FiKeySource.END_OF_INPUT)
+					continue;
+			}
+			
+			if(key == FiKeySource.END_OF_INPUT)
+				return line.length() == 0 ? null : line.toString();
+			
+			if(key == FiKeySource.ENTER) {
+				if(echo != null)
+					echo.println("");
+				
+				String entered = line.toString();
+				if(history != null)
+					history.add(entered);
+				
+				return entered;
+			}
+			
+			if(key == FiKeySource.TAB)
+				completeLine();
+			else if(key == FiKeySource.BACKSPACE)
+				backspace();
+			else if(key == FiKeySource.UP)
+				recall(-1);
+			else if(key == FiKeySource.DOWN)
+				recall(1);
+			else if(key >= ' ' && key <= Character.MAX_VALUE)
+				type((char) key);
+			
+			if(echo != null)
+				echo.flush();
+		}
+	}
+	
+	private void type(char c) {
+		line.append(c);
+		show(String.valueOf(c));
+		shown++;
+	}
+	
+	private void backspace() {
+		if(line.length() == 0)
+			return;
+		
+		line.setLength(line.length() - 1);
+		show("\b \b");
+		shown--;
+	}
+	
+	/**
+	 * Replaces the input with an older or newer line of the history.
+	 * Moving past the newest line brings back whatever was being typed.
+	 */
+	private void recall(int direction) {
+		if(history == null)
+			return;
+		
+		int position = historyPosition + direction;
+		if(position < 0 || position > history.size())
+			return;
+		
+		if(historyPosition == history.size())
+			draft = line.toString();
+		
+		historyPosition = position;
+		line.setLength(0);
+		line.append(position == history.size() ? draft : history.get(position));
+		redraw(cli.getCaret(session) + line);
+	}
+	
+	/**
+	 * Searches backwards through the history for lines containing what is typed.
+	 * Pressing Ctrl-R again finds the next older match.
+	 * @return The key that ended the search.
+	 */
+	private int reverseSearch() {
+		StringBuilder query = new StringBuilder();
+		int match = -1;
+		
+		while(true) {
+			String found = match < 0 ? "" : history.get(match);
+			redraw("(reverse-i-search)`" + query + "': " + found);
+			if(echo != null)
+				echo.flush();
+			
+			int key = keys.nextKey();
+			
+			if(key == FiKeySource.REVERSE_SEARCH) {
+				int older = match < 0 ? -1 : history.search(query.toString(), match);
+				match = older < 0 ? match : older;
+			} else if(key == FiKeySource.BACKSPACE) {
+				if(query.length() > 0)
+					query.setLength(query.length() - 1);
+				match = query.length() == 0 ? -1 : history.search(query.toString(), history.size());
+			} else if(key >= ' ' && key <= Character.MAX_VALUE) {
+				query.append((char) key);
+				
+				//The current match may still contain the longer text
+				match = history.search(query.toString(), match < 0 ? history.size() : match + 1);
+			} else {
+				if(match >= 0) {
+					line.setLength(0);
+					line.append(found);
+				}
+				
+				redraw(cli.getCaret(session) + line);
+				return key;
+			}
+		}
+	}
+	
+	/**
+	 * Adds as much as every candidate has in common, or lists the candidates if nothing can be added.
+	 */
+	private void completeLine() {
+		String input = line.toString();
+		FiCompletion completion = complete(input);
+		
+		if(completion.getCandidates().isEmpty())
+			return;
+		
+		int typed = input.length() - completion.getStart();
+		String common = completion.getCommonPrefix();
+		
+		//Only one way to continue, so finish the word and move on to the next one
+		if(completion.getCandidates().size() == 1 && !completion.hasMore()) {
+			String rest = completion.getCandidates().get(0).substring(typed) + " ";
+			line.append(rest);
+			show(rest);
+			shown += rest.length();
+			return;
+		}
+		
+		if(common.length() > typed) {
+			String rest = common.substring(typed);
+			line.append(rest);
+			show(rest);
+			shown += rest.length();
+			return;
+		}
+		
+		if(echo == null)
+			return;
+		
+		echo.println("");
+		echo.println(String.join("  ", completion.getCandidates()) + (completion.hasMore() ? "  ..." : ""));
+		
+		String prompt = cli.getCaret(session) + line;
+		echo.print(prompt);
+		shown = prompt.length();
+	}
+	
+	private void show(String text) {
+		if(echo != null)
+			echo.print(text);
+	}
+	
+	/**
+	 * Replaces the current line of the display, blanking out anything left over from a longer line.
+	 */
+	private void redraw(String text) {
+		if(echo != null) {
+			int extra = Math.max(shown - text.length(), 0);
+			echo.print("\r" + text + " ".repeat(extra) + "\b".repeat(extra));
+		}
+		
+		shown = text.length();
+	}
+}
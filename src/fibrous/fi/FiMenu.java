@@ -0,0 +1,132 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.ArrayList;
+
+/**
+ * A command that holds a menu of more commands.
+ * The menu is built once, when it is created, and is shared by every session that uses it.
+ * Entering just the commandString puts the session into the menu:
+ * the caret changes to the menu's caret, and input goes to the menu's commands until the back string is entered.
+ * Entering the commandString followed by one of the menu's commands, such as "menu add 2 7", runs that command straight away
+ * without entering the menu, which is handy for scripts.
+ * The session isn't in the menu when a path is run this way, so a path that ends in the back string, such as "menu back", does nothing.
+ * Menus can be nested inside of other menus.
+ * Add commands to the menu with addCommand(), or configure it further through getCLI().
+ */
+public class FiMenu extends FiCommand {
+	
+	private final FiCLI cli;
+	
+	/**
+	 * Creates an empty menu.
+	 * The exit and back strings are both allowed inside of the menu, and the caret is the commandString followed by " > ".
+	 * @param commandString
+	 */
+	public FiMenu(String commandString) {
+		super(commandString);
+		
+		cli = new FiCLI((FiInputStream) null, null, "?");
+		cli.allowAdditionalStates(true, true);
+		cli.setCaret(commandString + " > ");
+	}
+	
+	/**
+	 * Adds a command to this menu.
+	 * @param command
+	 */
+	public void addCommand(FiCommand command) {
+		cli.addCommand(command);
+	}
+	
+	/**
+	 * Returns the {@link FiCLI} that holds the commands of this menu.
+	 * @return
+	 */
+	public FiCLI getCLI() {
+		return cli;
+	}
+	
+	/**
+	 * Enters the menu, or runs one of its commands, depending on the input.
+	 */
+	@Override
+	public void execute(FiContext context) {
+		dispatch(context.getInput(), context.getSession(), null, null, false);
+	}
+	
+	/**
+	 * Enters the menu if the input is only the commandString, or else passes the rest of the input on to the menu's commands.
+	 * The state of a path is counted in the metrics of this menu's {@link FiCLI}, as if it had been entered inside of the menu.
+	 * @param input The line of input, starting with this menu's commandString.
+	 * @param session
+	 * @param result Where an explanation of the state is stored, or null if it isn't needed.
+	 * @param reuse A context to fill in instead of creating a new one, or null.
+	 * @param suggest Whether the closest commands should be found if the rest of the path is invalid.
+	 * @return The state of the command that was run.
+	 */
+	int dispatch(String input, FiSession session, FiState result, FiContext reuse, boolean suggest) {
+		int start = commandString.length();
+		while(start < input.length() && input.charAt(start) == ' ')
+			start++;
+		
+		if(start == input.length()) {
+			session.enterMenu(this);
+			return FiState.VALID;
+		}
+		
+		int depth = session.getMenuDepth();
+		int state = cli.dispatchLine(input.substring(start), session, result, reuse, suggest);
+		
+		//The path didn't enter this menu, so the back string has nothing to leave
+		if(state == FiState.BACK)
+			state = FiState.VALID;
+		
+		cli.recordState(state);
+		
+		//If the path ended in a menu inside of this one, backing out of it should come back to this menu
+		if(session.getMenuDepth() > depth)
+			session.insertMenu(depth, this);
+		
+		//Suggestions are for the rest of the path, so put the path to this menu in front of them
+		if(state == FiState.INVALID && result != null && !result.suggestions.isEmpty()) {
+			ArrayList<String> paths = new ArrayList<>(result.suggestions.size());
+			for(String suggestion : result.suggestions)
+				paths.add(commandString + " " + suggestion);
+			
+			result.suggestions = paths;
+		}
+		
+		return state;
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of how often each {@link FiCommand} of an {@link FiCLI} is executed and how long it takes.
+ * Also counts every state that the FiCLI has returned, including invalid input that didn't match any command.
+ * Metrics are only collected once they have been enabled with {@link FiCLI#setMetricsEnabled(boolean)}.
+ * The counters of a command are only created the first time it is executed, so large command sets that are mostly unused cost very little.
+ * Counters are kept by commandString, so a command that is replaced, such as when plugins are reloaded, isn't kept alive by its metrics,
+ * and its replacement carries on with the same counters.
+ */
+public final class FiMetrics {
+	
+	private final ConcurrentHashMap<String, FiCommandMetrics> commands;
+	private final LongAdder[] states;
+	private final LongAdder errors;
+	
+	FiMetrics() {
+		commands = new ConcurrentHashMap<>();
+		
+		states = new LongAdder[FiState.NUM_OF_STATES];
+		for(int i = 0; i < states.length; i++)
+			states[i] = new LongAdder();
+		
+		errors = new LongAdder();
+	}
+	
+	/**
+	 * Returns a snapshot of every command that has been executed, with the most executed commands first.
+	 * @return
+	 */
+	public List<FiCommandStats> snapshot() {
+		ArrayList<FiCommandStats> stats = new ArrayList<>(commands.size());
+		
+		for(FiCommandMetrics m : commands.values())
+			stats.add(new FiCommandStats(m));
+		
+		stats.sort((a, b) -> Long.compare(b.getInvocations(), a.getInvocations()));
+		
+		return Collections.unmodifiableList(stats);
+	}
+	
+	/**
+	 * Returns a snapshot of a single command, or null if it hasn't been executed.
+	 * @param command
+	 * @return
+	 */
+	public FiCommandStats snapshot(FiCommand command) {
+		FiCommandMetrics m = commands.get(command.commandString);
+		return m == null ? null : new FiCommandStats(m);
+	}
+	
+	/**
+	 * Returns how many lines of input resulted in the given state, whether or not they matched a command.
+	 * @param state One of the FiState state values, such as FiState.INVALID.
+	 * @return
+	 */
+	public long getCount(int state) {
+		if(state < 0 || state >= states.length)
+			return 0;
+		
+		return states[state].sum();
+	}
+	
+	/**
+	 * Returns how many commands threw an exception instead of finishing.
+	 * Those lines aren't counted in any state.
+	 * @return
+	 */
+	public long getErrors() {
+		return errors.sum();
+	}
+	
+	/**
+	 * Sets every counter back to zero.
+	 */
+	public void reset() {
+		for(LongAdder a : states)
+			a.reset();
+		errors.reset();
+		
+		for(FiCommandMetrics m : commands.values())
+			m.reset();
+	}
+	
+	/**
+	 * Records a line of input that resulted in the given state.
+	 */
+	void record(int state) {
+		if(state >= 0 && state < states.length)
+			states[state].increment();
+	}
+	
+	/**
+	 * Records a single execution of a command.
+	 */
+	void record(FiCommand command, int state, long nanos) {
+		get(command).record(state, nanos);
+	}
+	
+	/**
+	 * Records an invocation of a command that was answered from the {@link FiResultCache} instead of being executed.
+	 */
+	void recordCacheHit(FiCommand command) {
+		get(command).recordCacheHit();
+	}
+	
+	/**
+	 * Records an execution of a command that threw an exception.
+	 */
+	void recordError(FiCommand command, long nanos) {
+		errors.increment();
+		get(command).recordError(nanos);
+	}
+	
+	/**
+	 * Records that a command was dispatched but not executed, such as when its arguments were invalid.
+	 */
+	void record(FiCommand command, int state) {
+		get(command).recordState(state);
+	}
+	
+	private FiCommandMetrics get(FiCommand command) {
+		FiCommandMetrics m = commands.get(command.commandString);
+		if(m == null)
+			m = commands.computeIfAbsent(command.commandString, FiCommandMetrics::new);
+		
+		return m;
+	}
+}
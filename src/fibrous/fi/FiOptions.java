@@ -0,0 +1,233 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.Arrays;
+
+/**
+ * The values of the arguments of a single invocation, converted according to the command's {@link FiSchema}.
+ * Numbers are kept as primitives, so getInt(), getLong(), and getDouble() don't box anything.
+ * Options that weren't input have their default value, or zero, false, or null if they have no default.
+ * Each getter takes either the name of an option or its index, from {@link FiSchema#indexOf(String)} or {@link FiSchema.Option#getIndex()}.
+ * Names are looked up in a hash table, and indexes that were found once, such as when the schema was declared, aren't looked up at all.
+ */
+public final class FiOptions {
+	
+	private FiSchema schema;
+	private long[] longs;
+	private double[] doubles;
+	private String[] strings;
+	private boolean[] set;
+	
+	public FiOptions() {
+		longs = new long[0];
+		doubles = new double[0];
+		strings = new String[0];
+		set = new boolean[0];
+	}
+	
+	/**
+	 * Returns the value of an INT option.
+	 * @param name
+	 * @return
+	 */
+	public int getInt(String name) {
+		return getInt(schema.indexOf(name));
+	}
+	
+	/**
+	 * Returns the value of an INT option.
+	 * @param index
+	 * @return
+	 */
+	public int getInt(int index) {
+		return (int) longs[check(index, FiSchema.INT)];
+	}
+	
+	/**
+	 * Returns the value of a LONG or INT option.
+	 * @param name
+	 * @return
+	 */
+	public long getLong(String name) {
+		return getLong(schema.indexOf(name));
+	}
+	
+	/**
+	 * Returns the value of a LONG or INT option.
+	 * @param index
+	 * @return
+	 */
+	public long getLong(int index) {
+		int type = schema.get(index).type;
+		if(type != FiSchema.LONG && type != FiSchema.INT)
+			throw new IllegalArgumentException("\"" + schema.get(index).name + "\" is not a whole number option");
+		
+		return longs[index];
+	}
+	
+	/**
+	 * Returns the value of a DOUBLE option.
+	 * @param name
+	 * @return
+	 */
+	public double getDouble(String name) {
+		return getDouble(schema.indexOf(name));
+	}
+	
+	/**
+	 * Returns the value of a DOUBLE option.
+	 * @param index
+	 * @return
+	 */
+	public double getDouble(int index) {
+		return doubles[check(index, FiSchema.DOUBLE)];
+	}
+	
+	/**
+	 * Returns the value of a BOOLEAN option.
+	 * @param name
+	 * @return
+	 */
+	public boolean getBoolean(String name) {
+		return getBoolean(schema.indexOf(name));
+	}
+	
+	/**
+	 * Returns the value of a BOOLEAN option.
+	 * @param index
+	 * @return
+	 */
+	public boolean getBoolean(int index) {
+		return longs[check(index, FiSchema.BOOLEAN)] != 0;
+	}
+	
+	/**
+	 * Returns the value of a STRING option.
+	 * @param name
+	 * @return
+	 */
+	public String getString(String name) {
+		return getString(schema.indexOf(name));
+	}
+	
+	/**
+	 * Returns the value of a STRING option.
+	 * @param index
+	 * @return
+	 */
+	public String getString(int index) {
+		return strings[check(index, FiSchema.STRING)];
+	}
+	
+	/**
+	 * Returns true if the option was input, rather than having its default value.
+	 * @param name
+	 * @return
+	 */
+	public boolean isSet(String name) {
+		return set[schema.indexOf(name)];
+	}
+	
+	/**
+	 * Returns true if the option was input, rather than having its default value.
+	 * @param index
+	 * @return
+	 */
+	public boolean isSet(int index) {
+		//The arrays can be longer than the schema, so check the index against it
+		schema.get(index);
+		return set[index];
+	}
+	
+	/**
+	 * Prepares these options to hold the values of the given schema, starting from the defaults.
+	 */
+	void reset(FiSchema schema) {
+		this.schema = schema;
+		int n = schema.size();
+		
+		if(longs.length < n) {
+			longs = new long[n];
+			doubles = new double[n];
+			strings = new String[n];
+			set = new boolean[n];
+		}
+		
+		for(int i = 0; i < n; i++) {
+			FiSchema.Option o = schema.get(i);
+			longs[i] = o.defaultLong;
+			doubles[i] = o.defaultDouble;
+			strings[i] = o.defaultString;
+			set[i] = false;
+		}
+		
+		//Don't hold on to Strings from a larger schema
+		Arrays.fill(strings, n, strings.length, null);
+	}
+	
+	void setLong(int i, long value) {
+		longs[i] = value;
+		set[i] = true;
+	}
+	
+	void setDouble(int i, double value) {
+		doubles[i] = value;
+		set[i] = true;
+	}
+	
+	void setString(int i, String value) {
+		strings[i] = value;
+		set[i] = true;
+	}
+	
+	/**
+	 * Returns the index if the option has the given type.
+	 */
+	private int check(int index, int type) {
+		FiSchema.Option o = schema.get(index);
+		if(o.type != type)
+			throw new IllegalArgumentException("\"" + o.name + "\" is not a " + typeName(type) + " option");
+		
+		return index;
+	}
+	
+	private static String typeName(int type) {
+		switch(type) {
+		case FiSchema.INT: return "int";
+		case FiSchema.LONG: return "long";
+		case FiSchema.DOUBLE: return "double";
+		case FiSchema.BOOLEAN: return "boolean";
+		default: return "string";
+		}
+	}
+}
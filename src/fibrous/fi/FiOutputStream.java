@@ -47,4 +47,12 @@ public interface FiOutputStream {
 	 * @param s A line you wish to write/print.
 	 */
 	public void println(String s);
+	
+	/**
+	 * Writes out anything that has been buffered.
+	 * The {@link FiCLI} calls this after printing the caret, right before it waits for input.
+	 * Streams that don't buffer their output don't need to implement this.
+	 */
+	public default void flush() {
+	}
 }
@@ -0,0 +1,251 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Connects two stages of a command pipeline, such as "list | filter".
+ * The command on the left writes lines to the pipe as its {@link FiOutputStream},
+ * and the command on the right reads them as its {@link FiInputStream}.
+ * Only a limited number of lines are held at a time, so a fast producer waits for a slow consumer,
+ * and the consumer can start on the first lines before the producer has finished.
+ * Once the producer is done, readLine() returns null.
+ * If the consumer stops early and cancels the pipe, the producer's next write throws a {@link CancellationException}.
+ */
+public class FiPipe implements FiPollableInputStream, FiOutputStream {
+	
+	private final int capacity;
+	private final ArrayDeque<String> lines;
+	private final ReentrantLock lock;
+	private final Condition notEmpty;
+	private final Condition notFull;
+	
+	//Only touched by the producer
+	private final StringBuilder partialLine;
+	
+	private boolean closed;
+	private boolean cancelled;
+	
+	/**
+	 * Creates a pipe that holds up to the given number of lines.
+	 * @param capacity
+	 */
+	public FiPipe(int capacity) {
+		if(capacity < 1)
+			throw new IllegalArgumentException("A pipe must be able to hold at least one line");
+		
+		this.capacity = capacity;
+		lines = new ArrayDeque<>(capacity);
+		lock = new ReentrantLock();
+		notEmpty = lock.newCondition();
+		notFull = lock.newCondition();
+		partialLine = new StringBuilder();
+	}
+	
+	/**
+	 * Waits for the next line from the producer.
+	 * @return The next line, or null once the producer has finished and every line has been read.
+	 */
+	@Override
+	public String readLine() {
+		lock.lock();
+		try {
+			while(lines.isEmpty()) {
+				if(closed || cancelled)
+					return null;
+				
+				notEmpty.awaitUninterruptibly();
+			}
+			
+			String line = lines.poll();
+			notFull.signal();
+			return line;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Waits up to the given time for the next line from the producer.
+	 * @return The next line, or null if none arrived in time, or once the producer has finished and every line has been read.
+	 */
+	@Override
+	public String readLine(long timeout, TimeUnit unit) {
+		long nanos = unit.toNanos(timeout);
+		
+		lock.lock();
+		try {
+			while(lines.isEmpty()) {
+				if(closed || cancelled || nanos <= 0)
+					return null;
+				
+				try {
+					nanos = notEmpty.awaitNanos(nanos);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return null;
+				}
+			}
+			
+			String line = lines.poll();
+			notFull.signal();
+			return line;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public boolean isAtEnd() {
+		lock.lock();
+		try {
+			return lines.isEmpty() && (closed || cancelled);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Writes text to the pipe.
+	 * The text isn't passed on to the consumer until the line has been ended with println().
+	 */
+	@Override
+	public void print(String s) {
+		if(s.indexOf('\n') < 0) {
+			partialLine.append(s);
+			return;
+		}
+		
+		//Pass on every complete line
+		int start = 0;
+		int end;
+		while((end = s.indexOf('\n', start)) >= 0) {
+			partialLine.append(s, start, end);
+			put(takePartialLine());
+			start = end + 1;
+		}
+		
+		partialLine.append(s, start, s.length());
+	}
+	
+	/**
+	 * Writes a line to the pipe, waiting if the pipe is full.
+	 * @throws CancellationException If the consumer has cancelled the pipe.
+	 */
+	@Override
+	public void println(String s) {
+		if(partialLine.length() > 0) {
+			partialLine.append(s);
+			put(takePartialLine());
+		} else
+			put(s);
+	}
+	
+	/**
+	 * Called by the producer when it has finished writing.
+	 * Any unfinished line is passed on, and the consumer will see the end of the input once it has read every line.
+	 */
+	public void close() {
+		if(partialLine.length() > 0 && !isCancelled()) {
+			try {
+				put(takePartialLine());
+			} catch(CancellationException e) {
+				//Nobody is reading anymore
+			}
+		}
+		
+		lock.lock();
+		try {
+			closed = true;
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Called by the consumer when it doesn't want any more input.
+	 * Any lines that haven't been read are thrown away, and the producer is stopped at its next write.
+	 */
+	public void cancel() {
+		lock.lock();
+		try {
+			cancelled = true;
+			lines.clear();
+			notFull.signalAll();
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Returns true if the consumer has cancelled this pipe.
+	 * Producers can check this to stop early without waiting for their next write.
+	 * @return
+	 */
+	public boolean isCancelled() {
+		lock.lock();
+		try {
+			return cancelled;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	private String takePartialLine() {
+		String line = partialLine.toString();
+		partialLine.setLength(0);
+		return line;
+	}
+	
+	private void put(String line) {
+		lock.lock();
+		try {
+			while(lines.size() == capacity && !cancelled)
+				notFull.awaitUninterruptibly();
+			
+			if(cancelled)
+				throw new CancellationException("The next command in the pipeline has stopped reading");
+			
+			lines.add(line);
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
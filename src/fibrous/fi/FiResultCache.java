@@ -0,0 +1,272 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps the output of commands marked with {@link FiCommand#cacheTTL}, so running them again with the same arguments
+ * writes the saved output instead of executing the command.
+ * Each {@link FiCLI} has its own cache, which holds a limited number of results and drops the least recently used one when it is full.
+ * A result is also dropped once it is older than the TTL of its command.
+ * Results are shared by every {@link FiSession} of the FiCLI, since only the command and its arguments are part of the key,
+ * so commands whose output depends on the session, such as its caret or the menu it is in, shouldn't be cached.
+ * The kept output is written again with the same print and println calls, so line endings are whatever the receiving stream uses.
+ * Commands that change what a cached command would show should call one of the invalidate methods.
+ */
+public final class FiResultCache {
+	
+	private final LinkedHashMap<String, Result> results;
+	private int maxSize;
+	private long hits;
+	private long misses;
+	
+	FiResultCache(int maxSize) {
+		//Access order, so the eldest entry is the least recently used
+		results = new LinkedHashMap<>(16, 0.75f, true);
+		this.maxSize = maxSize;
+	}
+	
+	/**
+	 * Sets how many results are kept. 0 turns caching off.
+	 * @param max
+	 */
+	public synchronized void setMaxSize(int max) {
+		if(max < 0)
+			throw new IllegalArgumentException("The size of the cache can't be negative");
+		
+		maxSize = max;
+		
+		Iterator<Result> it = results.values().iterator();
+		while(results.size() > maxSize) {
+			it.next();
+			it.remove();
+		}
+	}
+	
+	/**
+	 * Returns how many results can be kept.
+	 * @return
+	 */
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+	
+	/**
+	 * Returns how many results are being kept, including any that have expired but haven't been looked up since.
+	 * @return
+	 */
+	public synchronized int size() {
+		return results.size();
+	}
+	
+	/**
+	 * Returns how many times a command was answered from the cache.
+	 * @return
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * Returns how many times a cacheable command had to be executed, because its result wasn't cached or had expired.
+	 * @return
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * Drops every result of a command, whatever its arguments were.
+	 * @param command
+	 */
+	public synchronized void invalidate(FiCommand command) {
+		//Output is kept under the real command of a command added with a supplier
+		if(command instanceof FiLazyCommand)
+			command = ((FiLazyCommand) command).getCreated();
+		
+		Iterator<Result> it = results.values().iterator();
+		while(it.hasNext()) {
+			if(it.next().command == command)
+				it.remove();
+		}
+	}
+	
+	/**
+	 * Drops the result of a command for one set of arguments.
+	 * @param command
+	 * @param arguments The arguments, as they would follow the command string.
+	 */
+	public void invalidate(FiCommand command, String arguments) {
+		FiArguments args = new FiArguments();
+		FiTokenizer.tokenize(arguments, 0, args);
+		String key = key(command, args);
+		
+		synchronized(this) {
+			results.remove(key);
+		}
+	}
+	
+	/**
+	 * Drops every result.
+	 */
+	public synchronized void invalidateAll() {
+		results.clear();
+	}
+	
+	/**
+	 * Returns the key for a command and its arguments.
+	 * The arguments have already been tokenized, so extra spaces and quotes that don't change them don't change the key.
+	 */
+	static String key(FiCommand command, FiArguments arguments) {
+		StringBuilder sb = new StringBuilder(command.commandString.length() + 32);
+		sb.append(command.commandString);
+		
+		for(int i = 0; i < arguments.size(); i++)
+			sb.append('\0').append(arguments.view(i));
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * Returns the saved output for a key, or null if there isn't any that is still current.
+	 */
+	synchronized Output get(String key, long now) {
+		Result r = results.get(key);
+		
+		if(r != null && now - r.expires < 0) {
+			hits++;
+			return r.output;
+		}
+		
+		if(r != null)
+			results.remove(key);
+		
+		misses++;
+		return null;
+	}
+	
+	synchronized void put(String key, FiCommand command, Output output, long expires) {
+		if(maxSize == 0)
+			return;
+		
+		results.put(key, new Result(command, output, expires));
+		
+		if(results.size() > maxSize) {
+			Iterator<Result> it = results.values().iterator();
+			it.next();
+			it.remove();
+		}
+	}
+	
+	/**
+	 * The output of one invocation, and when it expires in System.nanoTime().
+	 */
+	private static final class Result {
+		
+		final FiCommand command;
+		final Output output;
+		final long expires;
+		
+		Result(FiCommand command, Output output, long expires) {
+			this.command = command;
+			this.output = output;
+			this.expires = expires;
+		}
+	}
+	
+	/**
+	 * The print and println calls of one invocation, in order.
+	 */
+	static final class Output {
+		
+		private final String[] parts;
+		private final boolean[] newlines;
+		
+		Output(String[] parts, boolean[] newlines) {
+			this.parts = parts;
+			this.newlines = newlines;
+		}
+		
+		void writeTo(FiOutputStream os) {
+			for(int i = 0; i < parts.length; i++) {
+				if(newlines[i])
+					os.println(parts[i]);
+				else
+					os.print(parts[i]);
+			}
+		}
+	}
+	
+	/**
+	 * Writes output to where the command would have written it, while keeping a copy to be cached.
+	 */
+	static final class Recorder implements FiOutputStream {
+		
+		private final FiOutputStream os;
+		private final ArrayList<String> parts = new ArrayList<>();
+		private final ArrayList<Boolean> newlines = new ArrayList<>();
+		
+		Recorder(FiOutputStream os) {
+			this.os = os;
+		}
+		
+		@Override
+		public synchronized void print(String s) {
+			parts.add(s);
+			newlines.add(Boolean.FALSE);
+			os.print(s);
+		}
+		
+		@Override
+		public synchronized void println(String s) {
+			parts.add(s);
+			newlines.add(Boolean.TRUE);
+			os.println(s);
+		}
+		
+		@Override
+		public void flush() {
+			os.flush();
+		}
+		
+		synchronized Output getCopy() {
+			boolean[] n = new boolean[newlines.size()];
+			for(int i = 0; i < n.length; i++)
+				n[i] = newlines.get(i);
+			
+			return new Output(parts.toArray(new String[0]), n);
+		}
+	}
+}
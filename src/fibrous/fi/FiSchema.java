@@ -0,0 +1,621 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Declares the arguments that a {@link FiCommand} accepts, so they can be checked and converted before the command is executed.
+ * Set a command's {@link FiCommand#schema} in its constructor, and declare positional arguments and flags in the order they should appear:
+ * <pre>
+ * schema = new FiSchema();
+ * schema.positional("a", FiSchema.INT);
+ * schema.positional("b", FiSchema.INT).defaultValue("0");
+ * schema.flag("t", FiSchema.STRING);
+ * </pre>
+ * A flag with a one letter name is entered as "-t value", and a longer name as "--name value".
+ * BOOLEAN flags don't take a value, they are simply true when present.
+ * When the input doesn't fit the schema, the {@link FiCLI} returns {@link FiState#INVALID_ARGUMENTS} with an explanation, and the command is not executed.
+ * Otherwise the converted values are available from {@link FiContext#getOptions()}.
+ */
+public final class FiSchema {
+	
+	/**
+	 * Any text.
+	 */
+	public final static int STRING = 0;
+	
+	/**
+	 * A whole number that fits in an int.
+	 */
+	public final static int INT = 1;
+	
+	/**
+	 * A whole number that fits in a long.
+	 */
+	public final static int LONG = 2;
+	
+	/**
+	 * A number with an optional fraction.
+	 */
+	public final static int DOUBLE = 3;
+	
+	/**
+	 * true or false. As a flag, it is true when present and takes no value.
+	 */
+	public final static int BOOLEAN = 4;
+	
+	private static final String[] TYPE_NAMES = {"string", "int", "long", "double", "boolean"};
+	
+	/**
+	 * A single positional argument or flag.
+	 * Returned when it is declared, so it can be configured further.
+	 */
+	public static final class Option {
+		
+		final String name;
+		final int type;
+		final boolean isFlag;
+		final int index;
+		
+		boolean required;
+		String[] values;
+		
+		boolean hasDefault;
+		long defaultLong;
+		double defaultDouble;
+		String defaultString;
+		
+		Option(String name, int type, boolean isFlag, int index) {
+			this.name = name;
+			this.type = type;
+			this.isFlag = isFlag;
+			this.index = index;
+			
+			//Positional arguments are required unless they are given a default, and flags are optional
+			required = !isFlag;
+		}
+		
+		/**
+		 * Makes this option required or optional.
+		 * @param b
+		 * @return This option.
+		 */
+		public Option required(boolean b) {
+			required = b;
+			return this;
+		}
+		
+		/**
+		 * Sets the value that is used when this option isn't input, which also makes it optional.
+		 * @param value The value as it would be input.
+		 * @return This option.
+		 * @throws IllegalArgumentException If the value isn't valid for the option's type, or isn't one of the allowed values.
+		 */
+		public Option defaultValue(String value) {
+			String error = convert(value, this);
+			if(error != null)
+				throw new IllegalArgumentException(error);
+			if(values != null && !contains(values, value))
+				throw new IllegalArgumentException("The default \"" + value + "\" is not one of " + String.join(", ", values) + " for " + describe(this));
+			
+			defaultString = value;
+			hasDefault = true;
+			required = false;
+			return this;
+		}
+		
+		/**
+		 * Limits a STRING option to a fixed set of values.
+		 * The values are also offered when completing input.
+		 * @param allowed
+		 * @return This option.
+		 * @throws IllegalArgumentException If the option already has a default value that isn't one of them.
+		 */
+		public Option values(String... allowed) {
+			if(hasDefault && !contains(allowed, defaultString))
+				throw new IllegalArgumentException("The default \"" + defaultString + "\" is not one of " + String.join(", ", allowed) + " for " + describe(this));
+			
+			values = allowed.clone();
+			return this;
+		}
+		
+		/**
+		 * Returns the name of this option.
+		 * @return
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * Returns the position of this option in its schema, which can be passed to the getters of {@link FiOptions} instead of the name.
+		 * @return
+		 */
+		public int getIndex() {
+			return index;
+		}
+		
+		/**
+		 * Returns the type of this option, such as FiSchema.INT.
+		 * @return
+		 */
+		public int getType() {
+			return type;
+		}
+		
+		/**
+		 * Returns true if this is a flag rather than a positional argument.
+		 * @return
+		 */
+		public boolean isFlag() {
+			return isFlag;
+		}
+		
+		/**
+		 * Returns the values this option is limited to, or null if any value is allowed.
+		 * @return
+		 */
+		public String[] getValues() {
+			return values == null ? null : values.clone();
+		}
+		
+		/**
+		 * Returns what has to be input to set this flag, such as "-t" or "--name".
+		 * @return
+		 */
+		public String getFlagString() {
+			return (name.length() == 1 ? "-" : "--") + name;
+		}
+	}
+	
+	private final ArrayList<Option> options;
+	private final ArrayList<Option> positionals;
+	private final HashMap<String, Integer> indexes;
+	private String usage;
+	
+	public FiSchema() {
+		options = new ArrayList<>();
+		positionals = new ArrayList<>();
+		indexes = new HashMap<>();
+	}
+	
+	/**
+	 * Declares the next positional argument.
+	 * Positional arguments are required unless they are given a default value.
+	 * @param name
+	 * @param type One of the types defined in this class, such as FiSchema.INT.
+	 * @return The new option, so it can be configured further.
+	 */
+	public Option positional(String name, int type) {
+		Option o = add(name, type, false);
+		positionals.add(o);
+		return o;
+	}
+	
+	/**
+	 * Declares a flag.
+	 * Flags are optional unless they are marked as required.
+	 * @param name The name of the flag, without any dashes.
+	 * @param type One of the types defined in this class, such as FiSchema.STRING.
+	 * @return The new option, so it can be configured further.
+	 */
+	public Option flag(String name, int type) {
+		return add(name, type, true);
+	}
+	
+	/**
+	 * Returns the number of declared options.
+	 * @return
+	 */
+	public int size() {
+		return options.size();
+	}
+	
+	/**
+	 * Returns a declared option, in the order they were declared.
+	 * @param i
+	 * @return
+	 */
+	public Option get(int i) {
+		return options.get(i);
+	}
+	
+	/**
+	 * Returns the position of the option with the given name.
+	 * @param name
+	 * @return
+	 * @throws IllegalArgumentException If no such option has been declared.
+	 */
+	public int indexOf(String name) {
+		Integer i = indexes.get(name);
+		if(i == null)
+			throw new IllegalArgumentException("No option named \"" + name + "\" has been declared");
+		
+		return i;
+	}
+	
+	/**
+	 * Returns a short description of the expected arguments, such as "&lt;a:int&gt; [&lt;b:int&gt;] [-t &lt;string&gt;]".
+	 * @return
+	 */
+	public String usage() {
+		String u = usage;
+		if(u != null)
+			return u;
+		
+		StringBuilder sb = new StringBuilder();
+		
+		for(Option o : positionals) {
+			if(sb.length() > 0)
+				sb.append(' ');
+			
+			String s = "<" + o.name + ":" + TYPE_NAMES[o.type] + ">";
+			sb.append(o.required ? s : "[" + s + "]");
+		}
+		
+		for(Option o : options) {
+			if(!o.isFlag)
+				continue;
+			
+			if(sb.length() > 0)
+				sb.append(' ');
+			
+			String s = o.getFlagString() + (o.type == BOOLEAN ? "" : " <" + TYPE_NAMES[o.type] + ">");
+			sb.append(o.required ? s : "[" + s + "]");
+		}
+		
+		usage = sb.toString();
+		return usage;
+	}
+	
+	/**
+	 * Converts arguments into option values.
+	 * @param args The arguments that were input.
+	 * @param out Where the values are stored. Any previous values are replaced.
+	 * @return null if the arguments are valid, or else an explanation of what was wrong with them.
+	 */
+	String parse(FiArguments args, FiOptions out) {
+		out.reset(this);
+		
+		int positional = 0;
+		int n = args.size();
+		
+		for(int i = 0; i < n; i++) {
+			Option o;
+			
+			if(isFlag(args, i)) {
+				o = findFlag(args, i);
+				if(o == null)
+					return "Unknown option \"" + args.get(i) + "\"";
+				
+				if(o.type == BOOLEAN) {
+					out.setLong(o.index, 1);
+					continue;
+				}
+				
+				if(++i == n)
+					return "\"" + o.getFlagString() + "\" needs a value";
+			} else {
+				if(positional == positionals.size())
+					return "Too many arguments, expected " + usage();
+				
+				o = positionals.get(positional++);
+			}
+			
+			String error = store(args, i, o, out);
+			if(error != null)
+				return error;
+		}
+		
+		//Indexed loops, so no iterator is created while dispatching
+		for(int k = 0; k < options.size(); k++) {
+			Option o = options.get(k);
+			if(o.required && !out.isSet(o.index))
+				return "Missing " + (o.isFlag ? "\"" + o.getFlagString() + "\"" : "<" + o.name + ">") + ", expected " + usage();
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Finds the flags or allowed values that could complete the argument being input.
+	 * @param previous The arguments before the one being input.
+	 * @param token The part of the argument that has been input so far.
+	 * @param out Where the candidates are added.
+	 */
+	void complete(FiArguments previous, String token, List<String> out) {
+		if(token.startsWith("-")) {
+			for(Option o : options) {
+				if(o.isFlag && o.getFlagString().startsWith(token))
+					out.add(o.getFlagString());
+			}
+			
+			return;
+		}
+		
+		//Work out which option the argument belongs to, the same way parse() would
+		Option expected = null;
+		int positional = 0;
+		int n = previous.size();
+		
+		for(int i = 0; i < n; i++) {
+			if(!isFlag(previous, i)) {
+				positional++;
+				continue;
+			}
+			
+			Option o = findFlag(previous, i);
+			if(o != null && o.type != BOOLEAN && ++i == n)
+				expected = o;
+		}
+		
+		if(expected == null && positional < positionals.size())
+			expected = positionals.get(positional);
+		
+		if(expected == null)
+			return;
+		
+		String[] values = expected.type == BOOLEAN ? new String[] {"false", "true"} : expected.values;
+		if(values == null)
+			return;
+		
+		for(String v : values) {
+			if(v.startsWith(token))
+				out.add(v);
+		}
+	}
+	
+	private Option add(String name, int type, boolean isFlag) {
+		if(type < STRING || type > BOOLEAN)
+			throw new IllegalArgumentException("Unknown type " + type);
+		
+		if(indexes.containsKey(name))
+			throw new IllegalArgumentException("An option named \"" + name + "\" has already been declared");
+		
+		Option o = new Option(name, type, isFlag, options.size());
+		options.add(o);
+		indexes.put(name, o.index);
+		usage = null;
+		return o;
+	}
+	
+	/**
+	 * An argument is a flag if it starts with a dash that isn't the sign of a number.
+	 */
+	private static boolean isFlag(FiArguments args, int i) {
+		if(args.length(i) < 2)
+			return false;
+		
+		CharSequence v = args.view(i);
+		if(v.charAt(0) != '-')
+			return false;
+		
+		char c = v.charAt(1);
+		return !(c >= '0' && c <= '9') && c != '.';
+	}
+	
+	private Option findFlag(FiArguments args, int i) {
+		CharSequence v = args.view(i);
+		int dashes = v.charAt(1) == '-' ? 2 : 1;
+		
+		for(int j = 0; j < options.size(); j++) {
+			Option o = options.get(j);
+			if(!o.isFlag || o.name.length() != v.length() - dashes || (o.name.length() == 1) != (dashes == 1))
+				continue;
+			
+			boolean match = true;
+			for(int k = 0; k < o.name.length() && match; k++)
+				match = o.name.charAt(k) == v.charAt(dashes + k);
+			
+			if(match)
+				return o;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Converts a single argument and stores it, without creating a String for numbers.
+	 */
+	private static String store(FiArguments args, int i, Option o, FiOptions out) {
+		CharSequence v = args.view(i);
+		
+		try {
+			switch(o.type) {
+			case INT:
+				out.setLong(o.index, Integer.parseInt(v, 0, v.length(), 10));
+				return null;
+			case LONG:
+				out.setLong(o.index, Long.parseLong(v, 0, v.length(), 10));
+				return null;
+			case DOUBLE:
+				double d = parseSimpleDouble(v);
+				out.setDouble(o.index, Double.isNaN(d) ? Double.parseDouble(args.get(i)) : d);
+				return null;
+			case BOOLEAN:
+				if(args.equals(i, "true"))
+					out.setLong(o.index, 1);
+				else if(args.equals(i, "false"))
+					out.setLong(o.index, 0);
+				else
+					break;
+				return null;
+			default:
+				if(o.values != null && !contains(o.values, args, i))
+					return "\"" + args.get(i) + "\" is not one of " + String.join(", ", o.values) + " for " + describe(o);
+				
+				out.setString(o.index, args.get(i));
+				return null;
+			}
+		} catch(NumberFormatException e) {
+			//Reported below
+		}
+		
+		return "\"" + args.get(i) + "\" is not a valid " + TYPE_NAMES[o.type] + " for " + describe(o);
+	}
+	
+	/**
+	 * Converts a default value, storing it in the option.
+	 */
+	private static String convert(String value, Option o) {
+		try {
+			switch(o.type) {
+			case INT:
+				o.defaultLong = Integer.parseInt(value);
+				return null;
+			case LONG:
+				o.defaultLong = Long.parseLong(value);
+				return null;
+			case DOUBLE:
+				o.defaultDouble = Double.parseDouble(value);
+				return null;
+			case BOOLEAN:
+				if(!value.equals("true") && !value.equals("false"))
+					break;
+				o.defaultLong = value.equals("true") ? 1 : 0;
+				return null;
+			default:
+				return null;
+			}
+		} catch(NumberFormatException e) {
+			//Reported below
+		}
+		
+		return "\"" + value + "\" is not a valid " + TYPE_NAMES[o.type] + " for " + describe(o);
+	}
+	
+	/**
+	 * Parses a plain decimal number, such as "-12.5" or "3e4", straight from its characters.
+	 * Numbers with up to 15 digits and a power of ten up to 22 are exact as a double, as is the power of ten,
+	 * so a single multiplication or division gives the same correctly rounded result as Double.parseDouble().
+	 * @return The value, or NaN if the number has to be parsed by Double.parseDouble() instead.
+	 */
+	static double parseSimpleDouble(CharSequence v) {
+		int n = v.length();
+		int i = 0;
+		
+		boolean negative = false;
+		if(i < n && (v.charAt(i) == '-' || v.charAt(i) == '+'))
+			negative = v.charAt(i++) == '-';
+		
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean any = false;
+		boolean point = false;
+		
+		for(; i < n; i++) {
+			char c = v.charAt(i);
+			
+			if(c == '.' && !point) {
+				point = true;
+				continue;
+			}
+			
+			if(c < '0' || c > '9')
+				break;
+			
+			any = true;
+			if(mantissa != 0 || c != '0')
+				digits++;
+			if(digits > 15)
+				return Double.NaN;
+			
+			mantissa = mantissa * 10 + (c - '0');
+			if(point)
+				scale--;
+		}
+		
+		if(!any)
+			return Double.NaN;
+		
+		if(i < n && (v.charAt(i) == 'e' || v.charAt(i) == 'E')) {
+			i++;
+			
+			boolean negativeExponent = false;
+			if(i < n && (v.charAt(i) == '-' || v.charAt(i) == '+'))
+				negativeExponent = v.charAt(i++) == '-';
+			
+			int exponent = 0;
+			int start = i;
+			for(; i < n && i - start < 3; i++) {
+				char c = v.charAt(i);
+				if(c < '0' || c > '9')
+					break;
+				
+				exponent = exponent * 10 + (c - '0');
+			}
+			
+			if(i == start)
+				return Double.NaN;
+			
+			scale += negativeExponent ? -exponent : exponent;
+		}
+		
+		//Anything else, such as a suffix, hexadecimal, or more exponent digits, is left to Double.parseDouble()
+		if(i != n || scale < -22 || scale > 22)
+			return Double.NaN;
+		
+		double d = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+		return negative ? -d : d;
+	}
+	
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	
+	private static boolean contains(String[] values, String value) {
+		for(String s : values) {
+			if(s.equals(value))
+				return true;
+		}
+		
+		return false;
+	}
+	
+	private static boolean contains(String[] values, FiArguments args, int i) {
+		for(String s : values) {
+			if(args.equals(i, s))
+				return true;
+		}
+		
+		return false;
+	}
+	
+	private static String describe(Option o) {
+		return o.isFlag ? "\"" + o.getFlagString() + "\"" : "<" + o.name + ">";
+	}
+}
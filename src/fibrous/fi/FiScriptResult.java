@@ -0,0 +1,185 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Returned by the {@link FiScriptRunner} after running a script.
+ * Holds the number of lines that resulted in each {@link FiState} state, and the first few lines that were invalid.
+ */
+public class FiScriptResult {
+	
+	/**
+	 * A line of the script that wasn't a valid command, or whose arguments were invalid.
+	 */
+	public static class InvalidLine {
+		
+		/**
+		 * The line number within the script, starting at 1.
+		 */
+		public final long lineNumber;
+		
+		/**
+		 * The text of the line.
+		 */
+		public final String input;
+		
+		/**
+		 * What was wrong with the arguments, or null if the command wasn't recognized.
+		 */
+		public final String message;
+		
+		/**
+		 * The closest commands, if the command wasn't recognized and suggestions were turned on with {@link FiScriptRunner#setSuggestions(boolean)}.
+		 * Empty otherwise.
+		 */
+		public final List<String> suggestions;
+		
+		InvalidLine(long lineNumber, String input, String message, List<String> suggestions) {
+			this.lineNumber = lineNumber;
+			this.input = input;
+			this.message = message;
+			this.suggestions = suggestions;
+		}
+		
+		@Override
+		public String toString() {
+			return lineNumber + ": " + input + (message == null ? "" : " (" + message + ")");
+		}
+	}
+	
+	private final long[] counts;
+	private final ArrayList<InvalidLine> invalidLines;
+	private final int maxInvalidLines;
+	
+	private long linesRead;
+	private long stoppedAt;
+	
+	//Reused for every line, to collect the explanation of invalid arguments
+	final FiState lineState = new FiState(FiState.VALID, null);
+	
+	FiScriptResult(int maxInvalidLines) {
+		counts = new long[FiState.NUM_OF_STATES];
+		invalidLines = new ArrayList<>();
+		this.maxInvalidLines = maxInvalidLines;
+	}
+	
+	/**
+	 * Returns how many lines resulted in the given state.
+	 * @param state One of the FiState state values, such as FiState.VALID.
+	 * @return
+	 */
+	public long getCount(int state) {
+		if(state < 0 || state >= counts.length)
+			return 0;
+		
+		return counts[state];
+	}
+	
+	/**
+	 * Returns how many lines were read from the script, including blank lines and comments.
+	 * @return
+	 */
+	public long getLinesRead() {
+		return linesRead;
+	}
+	
+	/**
+	 * Returns how many lines were processed as commands.
+	 * @return
+	 */
+	public long getLinesProcessed() {
+		long total = 0;
+		for(long c : counts)
+			total += c;
+		
+		return total;
+	}
+	
+	/**
+	 * Returns the first invalid lines of the script, up to the limit configured on the {@link FiScriptRunner}.
+	 * @return
+	 */
+	public List<InvalidLine> getInvalidLines() {
+		return Collections.unmodifiableList(invalidLines);
+	}
+	
+	/**
+	 * Returns true if the script stopped before its end, either because of an error or the exit string.
+	 * @return
+	 */
+	public boolean isStopped() {
+		return stoppedAt > 0;
+	}
+	
+	/**
+	 * Returns the line number the script stopped at, or 0 if it ran to the end.
+	 * @return
+	 */
+	public long getStoppedAt() {
+		return stoppedAt;
+	}
+	
+	void lineRead() {
+		linesRead++;
+	}
+	
+	/**
+	 * Returns true if the next invalid line would be kept.
+	 */
+	boolean isKeepingInvalidLines() {
+		return invalidLines.size() < maxInvalidLines;
+	}
+	
+	void record(int state, String input, String message, List<String> suggestions) {
+		if(state >= 0 && state < counts.length)
+			counts[state]++;
+		
+		if((state == FiState.INVALID || state == FiState.INVALID_ARGUMENTS) && invalidLines.size() < maxInvalidLines)
+			invalidLines.add(new InvalidLine(linesRead, input, message, suggestions == null ? Collections.emptyList() : suggestions));
+	}
+	
+	void stop() {
+		stoppedAt = linesRead;
+	}
+	
+	@Override
+	public String toString() {
+		return "lines: " + linesRead + ", valid: " + counts[FiState.VALID] + ", invalid: " + counts[FiState.INVALID]
+				+ ", exit: " + counts[FiState.EXIT] + ", back: " + counts[FiState.BACK]
+				+ ", invalid arguments: " + counts[FiState.INVALID_ARGUMENTS]
+				+ (isStopped() ? ", stopped at line " + stoppedAt : "");
+	}
+}
@@ -0,0 +1,390 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs a script of commands through a {@link FiCLI}, one command per line.
+ * No caret is printed, and no {@link FiState} is created for each line.
+ * Instead, a single {@link FiScriptResult} is returned with the number of lines that resulted in each state,
+ * along with the first few invalid lines and their line numbers.
+ * Blank lines, and lines starting with '#', are skipped.
+ * By default, invalid lines are recorded and the script continues; use setPolicy() to stop at the first invalid line instead.
+ * Entering the exit string always stops the script.
+ * With setParallelism(), commands marked as {@link FiCommand#isIndependent} run at the same time as the independent commands next to them.
+ * Their output is collected and written in the order of the script, so it is the same as running the script one line at a time.
+ */
+public class FiScriptRunner {
+	
+	/**
+	 * Record invalid lines and keep going.
+	 */
+	public final static int CONTINUE = 0;
+	
+	/**
+	 * Stop at the first invalid line, or the first line with invalid arguments.
+	 */
+	public final static int STOP_ON_ERROR = 1;
+	
+	//Files up to this size are memory mapped when mapping is enabled
+	private static final long MAX_MAPPED_SIZE = Integer.MAX_VALUE;
+	
+	private final FiCLI cli;
+	private int policy = CONTINUE;
+	private int maxInvalidLines = 10;
+	private boolean suggestions = false;
+	private boolean useMemoryMapping = false;
+	private int parallelism = 1;
+	private Executor executor;
+	
+	/**
+	 * Creates a new script runner for the given {@link FiCLI}.
+	 * @param cli
+	 */
+	public FiScriptRunner(FiCLI cli) {
+		this.cli = cli;
+	}
+	
+	/**
+	 * Sets what happens when an invalid line is found, either CONTINUE or STOP_ON_ERROR.
+	 * @param policy
+	 */
+	public void setPolicy(int policy) {
+		this.policy = policy;
+	}
+	
+	/**
+	 * Returns the currently configured policy.
+	 * @return
+	 */
+	public int getPolicy() {
+		return policy;
+	}
+	
+	/**
+	 * Sets how many invalid lines are kept in the {@link FiScriptResult}.
+	 * Invalid lines past this limit are still counted.
+	 * @param max
+	 */
+	public void setMaxInvalidLines(int max) {
+		maxInvalidLines = max;
+	}
+	
+	/**
+	 * Determines whether the closest commands are found for each recorded invalid line, and kept in {@link FiScriptResult.InvalidLine#suggestions}.
+	 * Finding them takes much longer than finding that a line is invalid, so it is off by default,
+	 * and is only done for the lines that are kept, up to the limit set with setMaxInvalidLines().
+	 * @param b
+	 */
+	public void setSuggestions(boolean b) {
+		suggestions = b;
+	}
+	
+	/**
+	 * Determines whether script files are memory mapped instead of being read through a buffer.
+	 * Mapping can be faster for very large scripts on a local disk.
+	 * Files too large to be mapped in one piece are always read through a buffer.
+	 * @param b
+	 */
+	public void setMemoryMapping(boolean b) {
+		useMemoryMapping = b;
+	}
+	
+	/**
+	 * Sets how many independent commands can run at the same time.
+	 * Other lines wait for every earlier line to finish, and are then processed on their own, so they always see the effects of the lines before them.
+	 * The default of 1 runs every line one at a time.
+	 * @param n
+	 */
+	public void setParallelism(int n) {
+		if(n < 1)
+			throw new IllegalArgumentException("Parallelism must be at least 1");
+		
+		parallelism = n;
+	}
+	
+	/**
+	 * Sets the {@link Executor} that independent commands run on, such as a ForkJoinPool.
+	 * By default, the executor of the {@link FiCLI} is used, which runs them on virtual threads when they are available.
+	 * @param executor The executor, or null to use the FiCLI's.
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+	
+	/**
+	 * Runs a UTF-8 script file, writing any command output to the {@link FiCLI} session.
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public FiScriptResult run(Path file) throws IOException {
+		return run(file, cli.getSession());
+	}
+	
+	/**
+	 * Runs a UTF-8 script file with the given {@link FiSession}.
+	 * @param file
+	 * @param session
+	 * @return
+	 * @throws IOException
+	 */
+	public FiScriptResult run(Path file, FiSession session) throws IOException {
+		if(useMemoryMapping && Files.size(file) <= MAX_MAPPED_SIZE)
+			return runMapped(file, session);
+		
+		try(BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			return run(reader, session);
+		}
+	}
+	
+	/**
+	 * Runs a script from any {@link Reader} with the given {@link FiSession}.
+	 * The reader is not closed.
+	 * @param reader
+	 * @param session
+	 * @return
+	 * @throws IOException
+	 */
+	public FiScriptResult run(Reader reader, FiSession session) throws IOException {
+		BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 64 * 1024);
+		FiScriptResult result = new FiScriptResult(maxInvalidLines);
+		Batch batch = parallelism > 1 ? new Batch(session, result) : null;
+		
+		String line;
+		while((line = lines.readLine()) != null) {
+			if(!processLine(line, session, result, batch))
+				break;
+		}
+		
+		if(batch != null)
+			batch.finishAll();
+		
+		return result;
+	}
+	
+	private FiScriptResult runMapped(Path file, FiSession session) throws IOException {
+		FiScriptResult result = new FiScriptResult(maxInvalidLines);
+		Batch batch = parallelism > 1 ? new Batch(session, result) : null;
+		
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			int size = map.limit();
+			byte[] bytes = new byte[256];
+			
+			int start = 0;
+			while(start < size) {
+				
+				//'\n' never appears inside of a multi-byte UTF-8 character, so lines can be found on bytes
+				int end = start;
+				while(end < size && map.get(end) != '\n')
+					end++;
+				
+				int length = end - start;
+				if(length > 0 && map.get(end - 1) == '\r')
+					length--;
+				
+				if(length > bytes.length)
+					bytes = Arrays.copyOf(bytes, Math.max(length, bytes.length * 2));
+				
+				map.get(start, bytes, 0, length);
+				
+				if(!processLine(new String(bytes, 0, length, StandardCharsets.UTF_8), session, result, batch))
+					break;
+				
+				start = end + 1;
+			}
+		}
+		
+		if(batch != null)
+			batch.finishAll();
+		
+		return result;
+	}
+	
+	/**
+	 * Processes a single line of the script.
+	 * @param batch The independent commands that are running, or null if every line runs on its own.
+	 * @return False if the script should stop.
+	 */
+	private boolean processLine(String line, FiSession session, FiScriptResult result, Batch batch) {
+		result.lineRead();
+		
+		if(line.isBlank() || line.charAt(0) == '#')
+			return true;
+		
+		FiState lineState = result.lineState;
+		lineState.message = null;
+		lineState.suggestions = Collections.emptyList();
+		
+		if(batch != null) {
+			FiCLI target = cli.route(session);
+			FiCommand command = target.findIndependent(line);
+			
+			if(command != null) {
+				FiCaptureStream buffer = new FiCaptureStream();
+				FiContext context = target.prepareIndependent(command, line, session, buffer, lineState);
+				
+				if(context != null) {
+					batch.start(target, context, buffer);
+					return true;
+				}
+				
+				//The arguments were invalid, which is handled once the lines before it have finished
+				batch.finishAll();
+				return record(FiState.INVALID_ARGUMENTS, line, result);
+			}
+			
+			//Anything else waits for the lines before it
+			batch.finishAll();
+		}
+		
+		int state = cli.dispatch(line, session, lineState, null, suggestions && result.isKeepingInvalidLines());
+		return record(state, line, result);
+	}
+	
+	/**
+	 * Records the state of a line that has been processed.
+	 * @return False if the script should stop.
+	 */
+	private boolean record(int state, String line, FiScriptResult result) {
+		result.record(state, line, result.lineState.message, result.lineState.suggestions);
+		
+		if(state == FiState.EXIT || ((state == FiState.INVALID || state == FiState.INVALID_ARGUMENTS) && policy == STOP_ON_ERROR)) {
+			result.stop();
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * The independent commands of a script that are running at the same time, oldest first.
+	 * Only parallelism commands run at once, and their output is written to the session in the order they appear in the script.
+	 */
+	private final class Batch {
+		
+		private final FiSession session;
+		private final FiScriptResult result;
+		private final Executor commandExecutor;
+		private final ArrayDeque<Running> running;
+		
+		Batch(FiSession session, FiScriptResult result) {
+			this.session = session;
+			this.result = result;
+			commandExecutor = executor != null ? executor : cli.getExecutor();
+			running = new ArrayDeque<>(parallelism);
+		}
+		
+		void start(FiCLI target, FiContext context, FiCaptureStream buffer) {
+			if(running.size() == parallelism)
+				finishOldest();
+			
+			CompletableFuture<Void> future = CompletableFuture.runAsync(() -> target.executeCommand(context), commandExecutor);
+			running.add(new Running(target, buffer, future));
+		}
+		
+		void finishAll() {
+			while(!running.isEmpty())
+				finishOldest();
+		}
+		
+		/**
+		 * Waits for the oldest command, and writes its output.
+		 * If it failed, the commands after it have already been started, so they are waited for and their output is written in order too.
+		 * The first exception is then thrown as it would have been without running in parallel, with any others suppressed by it.
+		 */
+		private void finishOldest() {
+			Throwable failure = finish(running.poll());
+			if(failure == null)
+				return;
+			
+			while(!running.isEmpty()) {
+				Throwable other = finish(running.poll());
+				if(other != null)
+					failure.addSuppressed(other);
+			}
+			
+			if(failure instanceof RuntimeException)
+				throw (RuntimeException) failure;
+			if(failure instanceof Error)
+				throw (Error) failure;
+			throw new CompletionException(failure);
+		}
+		
+		/**
+		 * Waits for a command, writes its output, and records it if it finished.
+		 * @return What the command threw, or null if it finished.
+		 */
+		private Throwable finish(Running r) {
+			try {
+				r.future.join();
+			} catch(CompletionException e) {
+				return e.getCause() != null ? e.getCause() : e;
+			} finally {
+				r.buffer.writeTo(session.getOutputStream());
+			}
+			
+			r.target.recordState(FiState.VALID);
+			result.record(FiState.VALID, null, null, null);
+			return null;
+		}
+	}
+	
+	private static final class Running {
+		
+		final FiCLI target;
+		final FiCaptureStream buffer;
+		final CompletableFuture<Void> future;
+		
+		Running(FiCLI target, FiCaptureStream buffer, CompletableFuture<Void> future) {
+			this.target = target;
+			this.buffer = buffer;
+			this.future = future;
+		}
+	}
+}
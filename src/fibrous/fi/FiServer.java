@@ -0,0 +1,514 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Serves a {@link FiCLI} to many network clients at once from a single thread.
+ * Listen on any number of TCP or Unix domain socket addresses with bind(), and then call run(), usually on its own thread.
+ * Every connection gets its own {@link FiSession}, so the caret, output, and attributes of one client never mix with another's.
+ * Input is split into lines on '\n' (a trailing '\r' is dropped), and each line is passed to {@link FiCLI#processCommand(String, FiSession)}.
+ * When a client enters the exit string, its connection is closed once any pending output has been sent.
+ * A command that throws an exception is reported to handleError(), and only affects the client that entered it.
+ * Commands are executed on the server thread, so long running commands will hold up other clients,
+ * unless they are marked with {@link FiCommand#isAsync}, in which case they are executed on the {@link FiCLI} executor.
+ * Input is pushed to the session by the server, so the input stream of a connection's session is null.
+ */
+public class FiServer implements Runnable, Closeable {
+	
+	//Lines longer than this are discarded, which stops a client from using up all of the memory
+	static final int MAX_LINE_LENGTH = 64 * 1024;
+	
+	//Stop reading from a client that isn't reading its output once this much is waiting to be sent
+	private static final int MAX_PENDING_OUTPUT = 1024 * 1024;
+	
+	private final FiCLI cli;
+	private final Selector selector;
+	private final ArrayList<ServerSocketChannel> servers;
+	private final ConcurrentLinkedQueue<Connection> pendingWrites;
+	private final ByteBuffer readBuffer;
+	
+	private volatile Thread serverThread;
+	private volatile boolean stopping;
+	private volatile int connections;
+	
+	/**
+	 * Creates a new server for the given {@link FiCLI}.
+	 * Nothing is listened on until bind() is called.
+	 * @param cli
+	 * @throws IOException
+	 */
+	public FiServer(FiCLI cli) throws IOException {
+		this.cli = cli;
+		selector = Selector.open();
+		servers = new ArrayList<>();
+		pendingWrites = new ConcurrentLinkedQueue<>();
+		readBuffer = ByteBuffer.allocateDirect(16 * 1024);
+	}
+	
+	/**
+	 * Starts listening for connections on an address.
+	 * Pass an {@link java.net.InetSocketAddress} for TCP, or a {@link UnixDomainSocketAddress} for a Unix domain socket.
+	 * A TCP port of 0 picks any free port.
+	 * May be called before or while the server is running.
+	 * @param address
+	 * @return The address that is actually being listened on.
+	 * @throws IOException
+	 */
+	public SocketAddress bind(SocketAddress address) throws IOException {
+		ServerSocketChannel server;
+		
+		if(address instanceof UnixDomainSocketAddress)
+			server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		else
+			server = ServerSocketChannel.open();
+		
+		server.bind(address);
+		server.configureBlocking(false);
+		
+		synchronized(servers) {
+			servers.add(server);
+		}
+		
+		server.register(selector, SelectionKey.OP_ACCEPT);
+		selector.wakeup();
+		
+		return server.getLocalAddress();
+	}
+	
+	/**
+	 * Accepts connections and processes their input until close() is called.
+	 */
+	@Override
+	public void run() {
+		serverThread = Thread.currentThread();
+		
+		try {
+			while(!stopping) {
+				selector.select();
+				
+				if(stopping)
+					break;
+				
+				//Output written from other threads is waiting for the selector to start sending it
+				Connection pending;
+				while((pending = pendingWrites.poll()) != null)
+					pending.updateInterest();
+				
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					
+					try {
+						if(!key.isValid())
+							continue;
+						
+						if(key.isAcceptable())
+							accept((ServerSocketChannel) key.channel());
+						else {
+							Connection connection = (Connection) key.attachment();
+							
+							if(key.isReadable())
+								connection.read();
+							
+							if(key.isValid() && key.isWritable())
+								connection.write();
+						}
+					} catch(IOException | CancelledKeyException e) {
+						if(key.attachment() instanceof Connection)
+							((Connection) key.attachment()).close();
+					}
+				}
+			}
+		} catch(IOException | ClosedSelectorException e) {
+			//The selector was closed, so the server is done
+		} finally {
+			shutdown();
+			serverThread = null;
+		}
+	}
+	
+	/**
+	 * Stops listening, closes every connection, and makes run() return.
+	 * The connections are closed by the server thread, and this waits for it to finish unless it is called from the server thread itself.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized(servers) {
+			for(ServerSocketChannel server : servers)
+				server.close();
+			
+			servers.clear();
+		}
+		
+		stopping = true;
+		selector.wakeup();
+		
+		Thread thread = serverThread;
+		if(thread == null) {
+			//Nothing is using the selector, so the connections can be closed here
+			shutdown();
+			return;
+		}
+		
+		if(thread != Thread.currentThread()) {
+			try {
+				thread.join();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Closes every connection and the selector.
+	 * The selector's keys aren't safe to use from more than one thread, so this is only called from the server thread,
+	 * or from close() when the server isn't running.
+	 */
+	private synchronized void shutdown() {
+		if(!selector.isOpen())
+			return;
+		
+		for(SelectionKey key : selector.keys()) {
+			if(key.attachment() instanceof Connection)
+				((Connection) key.attachment()).close();
+		}
+		
+		try {
+			selector.close();
+		} catch(IOException e) {
+			//The connections are already closed
+		}
+	}
+	
+	/**
+	 * Returns the number of clients that are currently connected.
+	 * @return
+	 */
+	public int numOfConnections() {
+		return connections;
+	}
+	
+	/**
+	 * Called after every line from a client has been processed.
+	 * By default, an invalid command or invalid arguments are reported back to the client, and the connection is closed when the exit string is entered.
+	 * Override this to react to states differently.
+	 * @param session The session of the client that entered the line.
+	 * @param state What happened with the line.
+	 * @return False if the connection should be closed.
+	 */
+	protected boolean handleState(FiSession session, FiState state) {
+		if(state.state == FiState.EXIT)
+			return false;
+		
+		if(state.state == FiState.INVALID) {
+			session.getOutputStream().println('"' + state.input + '"' + " is an invalid command");
+			
+			if(!state.suggestions.isEmpty())
+				session.getOutputStream().println("Did you mean: " + String.join(", ", state.suggestions) + "?");
+		}
+		
+		if(state.state == FiState.INVALID_ARGUMENTS)
+			session.getOutputStream().println(state.message);
+		
+		return true;
+	}
+	
+	/**
+	 * Called when a command entered by a client throws an exception, instead of the exception stopping the server.
+	 * By default, the failure is reported back to the client.
+	 * Override this to log failures, or to report them differently.
+	 * @param session The session of the client that entered the line.
+	 * @param input The line that failed.
+	 * @param error What the command threw.
+	 */
+	protected void handleError(FiSession session, String input, Throwable error) {
+		session.getOutputStream().println('"' + input + '"' + " failed: " + error);
+	}
+	
+	/**
+	 * Called when a client connects, before the first caret is printed.
+	 * Override this to greet the client or to set up the session.
+	 * @param session
+	 */
+	protected void sessionOpened(FiSession session) {
+	}
+	
+	/**
+	 * Called after a client's connection has been closed.
+	 * @param session
+	 */
+	protected void sessionClosed(FiSession session) {
+	}
+	
+	private void accept(ServerSocketChannel server) throws IOException {
+		SocketChannel channel = server.accept();
+		if(channel == null)
+			return;
+		
+		channel.configureBlocking(false);
+		SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+		
+		Connection connection = new Connection(channel, key);
+		key.attach(connection);
+		connections++;
+		
+		sessionOpened(connection.session);
+		connection.printCaret();
+		connection.updateInterest();
+	}
+	
+	/**
+	 * The state of a single client connection.
+	 * It is also the {@link FiOutputStream} of the client's session.
+	 */
+	private final class Connection implements FiOutputStream {
+		
+		private final SocketChannel channel;
+		private final SelectionKey key;
+		private final FiSession session;
+		
+		//The bytes of a line that hasn't been ended yet
+		private byte[] line;
+		private int lineLength;
+		private boolean discarding;
+		
+		//Guarded by the output queue
+		private final ArrayDeque<ByteBuffer> output;
+		private int outputBytes;
+		
+		private volatile boolean closing;
+		private volatile boolean closed;
+		
+		Connection(SocketChannel channel, SelectionKey key) {
+			this.channel = channel;
+			this.key = key;
+			session = new FiSession(null, this);
+			line = new byte[256];
+			output = new ArrayDeque<>();
+		}
+		
+		void read() throws IOException {
+			readBuffer.clear();
+			int n = channel.read(readBuffer);
+			
+			if(n < 0) {
+				close();
+				return;
+			}
+			
+			readBuffer.flip();
+			
+			//'\n' never appears inside of a multi-byte UTF-8 character, so lines can be framed on bytes
+			while(readBuffer.hasRemaining() && !closing) {
+				byte b = readBuffer.get();
+				
+				if(b == '\n') {
+					if(!discarding)
+						processLine();
+					
+					lineLength = 0;
+					discarding = false;
+				} else if(!discarding) {
+					if(lineLength == MAX_LINE_LENGTH) {
+						discarding = true;
+						continue;
+					}
+					
+					if(lineLength == line.length)
+						line = Arrays.copyOf(line, Math.min(line.length * 2, MAX_LINE_LENGTH));
+					
+					line[lineLength++] = b;
+				}
+			}
+		}
+		
+		private void processLine() {
+			int length = lineLength;
+			if(length > 0 && line[length - 1] == '\r')
+				length--;
+			
+			String input = new String(line, 0, length, StandardCharsets.UTF_8);
+			
+			//A command that fails only fails for this client, instead of stopping the server
+			CompletableFuture<FiState> future;
+			try {
+				future = cli.processCommandAsync(input, session);
+			} catch(RuntimeException e) {
+				future = CompletableFuture.failedFuture(e);
+			}
+			
+			if(future.isDone()) {
+				finishLine(input, future);
+				updateInterest();
+			} else {
+				//The command is running on another thread, so hand the connection back to the server thread when it finishes
+				CompletableFuture<FiState> running = future;
+				future.whenComplete((state, error) -> {
+					finishLine(input, running);
+					
+					pendingWrites.add(this);
+					selector.wakeup();
+				});
+			}
+		}
+		
+		private void finishLine(String input, CompletableFuture<FiState> future) {
+			FiState state;
+			try {
+				state = future.join();
+			} catch(CompletionException e) {
+				handleError(session, input, e.getCause());
+				printCaret();
+				return;
+			}
+			
+			if(handleState(session, state))
+				printCaret();
+			else
+				closing = true;
+		}
+		
+		void printCaret() {
+			print(cli.getCaret(session));
+		}
+		
+		void write() throws IOException {
+			synchronized(output) {
+				while(!output.isEmpty()) {
+					ByteBuffer buffer = output.peek();
+					int n = channel.write(buffer);
+					outputBytes -= n;
+					
+					//The socket is full, so wait for it to become writable again
+					if(buffer.hasRemaining())
+						break;
+					
+					output.poll();
+				}
+			}
+			
+			updateInterest();
+		}
+		
+		/**
+		 * Only called from the server thread.
+		 */
+		void updateInterest() {
+			//The key is cancelled when the server is stopped
+			if(closed || !key.isValid())
+				return;
+			
+			boolean hasOutput;
+			int pending;
+			synchronized(output) {
+				hasOutput = !output.isEmpty();
+				pending = outputBytes;
+			}
+			
+			if(closing && !hasOutput) {
+				close();
+				return;
+			}
+			
+			int ops = 0;
+			if(!closing && pending < MAX_PENDING_OUTPUT)
+				ops |= SelectionKey.OP_READ;
+			if(hasOutput)
+				ops |= SelectionKey.OP_WRITE;
+			
+			key.interestOps(ops);
+		}
+		
+		void close() {
+			if(closed)
+				return;
+			
+			closed = true;
+			connections--;
+			key.cancel();
+			
+			try {
+				channel.close();
+			} catch(IOException e) {
+				//Nothing more can be done with this connection
+			}
+			
+			sessionClosed(session);
+		}
+
+		@Override
+		public void print(String s) {
+			if(closed || s.isEmpty())
+				return;
+			
+			ByteBuffer buffer = ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+			
+			synchronized(output) {
+				output.add(buffer);
+				outputBytes += buffer.remaining();
+			}
+			
+			//Output from another thread has to be handed to the server thread
+			if(Thread.currentThread() != serverThread) {
+				pendingWrites.add(this);
+				selector.wakeup();
+			}
+		}
+
+		@Override
+		public void println(String s) {
+			print(s + "\n");
+		}
+	}
+}
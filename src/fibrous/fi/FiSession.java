@@ -0,0 +1,180 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The state belonging to one user or client of a {@link FiCLI}.
+ * A single FiCLI and its commands can serve many sessions at the same time,
+ * with each session having its own input, output, and caret.
+ * Commands can find the session that invoked them through {@link FiContext#getSession()},
+ * and can keep their own per-session values with setAttribute() and getAttribute().
+ * A session also remembers which {@link FiMenu} it is currently in, so input is passed to that menu until the back string is entered.
+ */
+public class FiSession {
+	
+	private volatile FiInputStream iStream;
+	private volatile FiOutputStream oStream;
+	private volatile String caret;
+	
+	//Set once the caret has been printed and the session is waiting for a line, so polling doesn't print it again
+	volatile boolean isWaitingForInput;
+	
+	private final ConcurrentHashMap<String, Object> attributes;
+	
+	//The menus that have been entered, innermost last
+	private final ArrayList<FiMenu> menus;
+	
+	/**
+	 * Creates a new session that reads from and writes to the given streams.
+	 * @param is
+	 * @param os
+	 */
+	public FiSession(FiInputStream is, FiOutputStream os) {
+		iStream = is;
+		oStream = os;
+		attributes = new ConcurrentHashMap<>();
+		menus = new ArrayList<>(4);
+	}
+	
+	/**
+	 * Returns the {@link FiInputStream} that this session reads commands from.
+	 * @return
+	 */
+	public FiInputStream getInputStream() {
+		return iStream;
+	}
+	
+	/**
+	 * Sets the {@link FiInputStream} that this session reads commands from.
+	 * @param fis
+	 */
+	public void setInput(FiInputStream fis) {
+		iStream = fis;
+	}
+	
+	/**
+	 * Returns the {@link FiOutputStream} that output for this session should be written to.
+	 * @return
+	 */
+	public FiOutputStream getOutputStream() {
+		return oStream;
+	}
+	
+	/**
+	 * Sets the {@link FiOutputStream} that output for this session should be written to.
+	 * @param fos
+	 */
+	public void setOutput(FiOutputStream fos) {
+		oStream = fos;
+	}
+	
+	/**
+	 * Sets a caret for this session only.
+	 * Set to null to use the caret configured on the {@link FiCLI}.
+	 * @param c
+	 */
+	public void setCaret(String c) {
+		caret = c;
+	}
+	
+	/**
+	 * Returns the caret configured for this session, or null if the {@link FiCLI} caret is used.
+	 * @return
+	 */
+	public String getCaret() {
+		return caret;
+	}
+	
+	/**
+	 * Returns the menu that this session is currently in, or null if it isn't in a menu.
+	 * @return
+	 */
+	public synchronized FiMenu getMenu() {
+		return menus.isEmpty() ? null : menus.get(menus.size() - 1);
+	}
+	
+	/**
+	 * Returns how many menus deep this session currently is.
+	 * @return
+	 */
+	public synchronized int getMenuDepth() {
+		return menus.size();
+	}
+	
+	/**
+	 * Leaves every menu, returning this session to the top level.
+	 */
+	public synchronized void leaveMenus() {
+		menus.clear();
+	}
+	
+	synchronized void enterMenu(FiMenu menu) {
+		menus.add(menu);
+	}
+	
+	synchronized void insertMenu(int depth, FiMenu menu) {
+		menus.add(depth, menu);
+	}
+	
+	/**
+	 * Leaves the current menu, but only if it belongs to the given FiCLI.
+	 */
+	synchronized void leaveMenu(FiCLI cli) {
+		if(!menus.isEmpty() && menus.get(menus.size() - 1).getCLI() == cli)
+			menus.remove(menus.size() - 1);
+	}
+	
+	/**
+	 * Stores a value in this session.
+	 * Passing a null value removes the attribute.
+	 * @param name
+	 * @param value
+	 */
+	public void setAttribute(String name, Object value) {
+		if(value == null)
+			attributes.remove(name);
+		else
+			attributes.put(name, value);
+	}
+	
+	/**
+	 * Returns a value stored in this session, or null if there isn't one.
+	 * @param name
+	 * @return
+	 */
+	public Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+}
@@ -31,10 +31,13 @@
 
 package fibrous.fi;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * This class is returned by the {@link FiCLI} when processCommand() is called.
  * The int "state" will be set to reflect the type of command that was passed.
- * Depending on the FiCLI configuration, the state will be either VALID, INVALID, EXIT, or BACK (0, 1, 2, or 3).
+ * Depending on the FiCLI configuration, the state will be either VALID, INVALID, EXIT, BACK, INVALID_ARGUMENTS, or NO_INPUT (0, 1, 2, 3, 4, or 5).
  * The String "input" is the command that was passed to the FiCLI object.
  * @author noahm
  */
@@ -53,6 +56,7 @@ public class FiState {
 	
 	/**
 	 * This indicates that the String configured for exiting was input.
+	 * It is also returned when the input has ended, in which case the input field is null.
 	 * No action is taken at this time, and it is up to the programmer to define the exit behavior.
 	 */
 	public final static int EXIT = 2;
@@ -63,6 +67,23 @@ public class FiState {
 	 */
 	public final static int BACK = 3;
 	
+	/**
+	 * This indicates that a command was recognized, but its arguments didn't fit its {@link FiSchema}, so it was not executed.
+	 * The reason is in {@link message}.
+	 */
+	public final static int INVALID_ARGUMENTS = 4;
+	
+	/**
+	 * This indicates that no line of input arrived before the timeout, so nothing was processed.
+	 * Only returned by processCommand() with a timeout. The input field is null.
+	 */
+	public final static int NO_INPUT = 5;
+	
+	/**
+	 * The number of different states, for code that keeps a count of each one.
+	 */
+	final static int NUM_OF_STATES = 6;
+	
 	/**
 	 * The state returned from the system based off of the command that was received.
 	 */
@@ -73,6 +94,18 @@ public class FiState {
 	 */
 	public String input;
 	
+	/**
+	 * An explanation of the state, such as what was wrong with the arguments.
+	 * null if there is nothing to explain.
+	 */
+	public String message;
+	
+	/**
+	 * When the state is INVALID, the configured commands that are closest to the input, closest first.
+	 * Empty if nothing is close, or if suggestions are turned off with {@link FiCLI#setMaxSuggestions(int)}.
+	 */
+	public List<String> suggestions = Collections.emptyList();
+	
 	/**
 	 * Only supposed to be instantiated by an FiCLI object when a command is parsed.
 	 * @param state
@@ -0,0 +1,112 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.List;
+
+/**
+ * A built-in command that lists the metrics recorded by an {@link FiCLI}.
+ * Add it like any other command, for example cli.addCommand(new FiStatsCommand("stats", cli)).
+ * Metrics must be enabled with {@link FiCLI#setMetricsEnabled(boolean)} for there to be anything to show.
+ * An optional argument limits how many commands are listed, with the most executed commands shown first.
+ */
+public class FiStatsCommand extends FiCommand {
+	
+	private final FiCLI cli;
+	
+	/**
+	 * @param commandString
+	 * @param cli The FiCLI whose metrics will be shown.
+	 */
+	public FiStatsCommand(String commandString, FiCLI cli) {
+		super(commandString);
+		this.cli = cli;
+		
+		commandDescription = "Shows how often commands run and how long they take. Usage example: " + commandString + " 10";
+	}
+	
+	@Override
+	public void execute(FiContext context) {
+		FiOutputStream os = context.getOutputStream();
+		
+		if(!cli.isMetricsEnabled()) {
+			os.println("Metrics are not enabled");
+			return;
+		}
+		
+		int limit = Integer.MAX_VALUE;
+		if(context.getArguments().size() > 0) {
+			try {
+				limit = Integer.parseInt(context.getArguments().get(0));
+			} catch(NumberFormatException e) {
+				os.println("\"" + context.getArguments().get(0) + "\" is not a number");
+				return;
+			}
+		}
+		
+		FiMetrics metrics = cli.getMetrics();
+		os.println("Valid: " + metrics.getCount(FiState.VALID) + "  Invalid: " + metrics.getCount(FiState.INVALID)
+				+ "  Exit: " + metrics.getCount(FiState.EXIT) + "  Back: " + metrics.getCount(FiState.BACK)
+				+ "  Invalid arguments: " + metrics.getCount(FiState.INVALID_ARGUMENTS) + "  Errors: " + metrics.getErrors());
+		
+		List<FiCommandStats> stats = metrics.snapshot();
+		if(stats.isEmpty())
+			return;
+		
+		int width = 7;
+		for(int i = 0; i < stats.size() && i < limit; i++)
+			width = Math.max(width, stats.get(i).getCommandString().length());
+		
+		String format = "%-" + width + "s  %10s  %10s  %10s  %10s  %10s  %10s";
+		os.println(String.format(format, "Command", "Calls", "Errors", "Mean", "p50", "p99", "Max"));
+		
+		for(int i = 0; i < stats.size() && i < limit; i++) {
+			FiCommandStats s = stats.get(i);
+			os.println(String.format(format, s.getCommandString(), s.getInvocations(), s.getErrors(), formatNanos(s.getMeanNanos()),
+					formatNanos(s.getPercentileNanos(50)), formatNanos(s.getPercentileNanos(99)), formatNanos(s.getMaxNanos())));
+		}
+	}
+	
+	/**
+	 * Shows a duration in the most readable unit.
+	 */
+	private static String formatNanos(long nanos) {
+		if(nanos < 10_000)
+			return nanos + "ns";
+		if(nanos < 10_000_000)
+			return (nanos / 1_000) + "us";
+		if(nanos < 10_000_000_000L)
+			return (nanos / 1_000_000) + "ms";
+		
+		return (nanos / 1_000_000_000) + "s";
+	}
+}
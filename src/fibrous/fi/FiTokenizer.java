@@ -0,0 +1,170 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the arguments portion of an input line into {@link FiArguments} in a single pass.
+ * Arguments are separated by any run of spaces or tabs.
+ * Text in double or single quotes is kept together as one argument, including its spaces.
+ * A backslash outside of single quotes makes the next character literal, so \" or \\ can be used.
+ * Quoted and unquoted text that touch each other form one argument, the same as in most shells.
+ * An unterminated quote simply runs to the end of the line.
+ */
+public final class FiTokenizer {
+	
+	private static final int BETWEEN = 0;
+	private static final int UNQUOTED = 1;
+	private static final int SINGLE_QUOTED = 2;
+	private static final int DOUBLE_QUOTED = 3;
+	
+	private FiTokenizer() {
+	}
+	
+	/**
+	 * Tokenizes the given input, starting at the given position, into the arguments object.
+	 * Any arguments that were previously in the arguments object are removed.
+	 * @param input The line of input.
+	 * @param from The position to start at, typically the length of the matched commandString.
+	 * @param args Where the arguments will be stored.
+	 */
+	public static void tokenize(CharSequence input, int from, FiArguments args) {
+		args.reset();
+		
+		int state = BETWEEN;
+		int length = input.length();
+		
+		for(int i = from; i < length; i++) {
+			char c = input.charAt(i);
+			
+			switch(state) {
+			case BETWEEN:
+				if(c == ' ' || c == '\t')
+					break;
+				
+				args.begin();
+				state = UNQUOTED;
+				
+				//Let the UNQUOTED case handle the first character
+				i--;
+				break;
+				
+			case UNQUOTED:
+				if(c == ' ' || c == '\t') {
+					args.end();
+					state = BETWEEN;
+				} else if(c == '"') {
+					state = DOUBLE_QUOTED;
+				} else if(c == '\'') {
+					state = SINGLE_QUOTED;
+				} else if(c == '\\' && i + 1 < length) {
+					args.append(input.charAt(++i));
+				} else {
+					args.append(c);
+				}
+				break;
+				
+			case SINGLE_QUOTED:
+				if(c == '\'')
+					state = UNQUOTED;
+				else
+					args.append(c);
+				break;
+				
+			case DOUBLE_QUOTED:
+				if(c == '"')
+					state = UNQUOTED;
+				else if(c == '\\' && i + 1 < length)
+					args.append(input.charAt(++i));
+				else
+					args.append(c);
+				break;
+			}
+		}
+		
+		//Finish the last argument if the line didn't end in whitespace
+		if(state != BETWEEN)
+			args.end();
+	}
+	
+	/**
+	 * Splits a line into the commands of a pipeline, such as "list | filter x".
+	 * A '|' inside of quotes, or after a backslash, does not split the line.
+	 * Each command is trimmed of surrounding whitespace.
+	 * @param input
+	 * @return Every command in the pipeline, or just the input if it isn't a pipeline.
+	 */
+	public static List<String> splitPipeline(String input) {
+		ArrayList<String> stages = new ArrayList<>();
+		
+		int state = UNQUOTED;
+		int start = 0;
+		int length = input.length();
+		
+		for(int i = 0; i < length; i++) {
+			char c = input.charAt(i);
+			
+			switch(state) {
+			case UNQUOTED:
+				if(c == '|') {
+					stages.add(input.substring(start, i).trim());
+					start = i + 1;
+				} else if(c == '"') {
+					state = DOUBLE_QUOTED;
+				} else if(c == '\'') {
+					state = SINGLE_QUOTED;
+				} else if(c == '\\') {
+					i++;
+				}
+				break;
+				
+			case SINGLE_QUOTED:
+				if(c == '\'')
+					state = UNQUOTED;
+				break;
+				
+			case DOUBLE_QUOTED:
+				if(c == '"')
+					state = UNQUOTED;
+				else if(c == '\\')
+					i++;
+				break;
+			}
+		}
+		
+		stages.add(input.substring(start).trim());
+		
+		return stages;
+	}
+}
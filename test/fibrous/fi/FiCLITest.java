@@ -0,0 +1,252 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class FiCLITest {
+	
+	private static FiCLI createCLI(FiCaptureStream out) {
+		FiCLI cli = new FiCLI((FiInputStream) null, out, "?");
+		
+		cli.addCommand(new FiCommand("echo") {
+			@Override
+			public void execute(FiContext context) {
+				context.getOutputStream().println(String.join(" ", context.getArguments()));
+			}
+		});
+		
+		return cli;
+	}
+	
+	@Test
+	void endOfInputExits() {
+		FiCaptureStream out = new FiCaptureStream();
+		FiCLI cli = createCLI(out);
+		
+		FiPipe input = new FiPipe(4);
+		input.println("echo hi");
+		input.close();
+		FiSession session = new FiSession(input, out);
+		
+		assertEquals(FiState.VALID, cli.processCommand(session).state);
+		
+		FiState state = cli.processCommand(session);
+		assertEquals(FiState.EXIT, state.state);
+		assertNull(state.input);
+		
+		assertEquals(FiState.EXIT, cli.processCommandAsync(session).join().state);
+	}
+	
+	@Test
+	void endOfPolledInputExits() {
+		FiCaptureStream out = new FiCaptureStream();
+		FiCLI cli = createCLI(out);
+		
+		FiPipe input = new FiPipe(4);
+		FiSession session = new FiSession(input, out);
+		
+		assertEquals(FiState.NO_INPUT, cli.processCommand(session, 0, TimeUnit.MILLISECONDS).state);
+		
+		input.close();
+		assertEquals(FiState.EXIT, cli.processCommand(session, 0, TimeUnit.MILLISECONDS).state);
+	}
+	
+	@Test
+	void endOfLineEditorInputExits() {
+		FiCaptureStream out = new FiCaptureStream();
+		FiCLI cli = createCLI(out);
+		
+		FiLineEditor editor = new FiLineEditor(cli, FiKeySource.of("echo a\n"), out);
+		FiSession session = new FiSession(editor, out);
+		
+		assertEquals(FiState.VALID, cli.processCommand(session).state);
+		assertEquals(FiState.EXIT, cli.processCommand(session).state);
+	}
+	
+	@Test
+	void commandsAddedOneByOneStaySorted() {
+		FiCaptureStream out = new FiCaptureStream();
+		FiCLI cli = createCLI(out);
+		
+		String[] names = {"b", "a", "c", "a", "b"};
+		ArrayList<FiCommand> added = new ArrayList<>();
+		for(int i = 0; i < names.length; i++) {
+			FiCommand c = new FiCommand(names[i]) {
+				@Override
+				public void execute(FiContext context) {
+				}
+			};
+			added.add(c);
+			cli.addCommand(c);
+			
+			//Reading the list part of the way through merges the commands added so far
+			if(i == 2)
+				assertEquals(4, cli.getCommands().size());
+		}
+		
+		List<FiCommand> commands = cli.getCommands();
+		assertEquals(names.length + 1, cli.numOfCommands());
+		assertEquals(List.of(added.get(1), added.get(3), added.get(0), added.get(4), added.get(2), commands.get(5)), commands);
+		assertEquals("echo", commands.get(5).commandString);
+		
+		assertEquals(FiState.VALID, cli.processCommand("c", new FiSession(null, out)).state);
+	}
+	
+	@Test
+	void metricsCountThrowingCommandsAsErrors() {
+		FiCaptureStream out = new FiCaptureStream();
+		FiCLI cli = createCLI(out);
+		cli.setMetricsEnabled(true);
+		
+		FiCommand boom = new FiCommand("boom") {
+			@Override
+			public void execute(FiContext context) {
+				throw new IllegalStateException("boom");
+			}
+		};
+		cli.addCommand(boom);
+		
+		FiSession session = new FiSession(null, out);
+		assertThrows(IllegalStateException.class, () -> cli.processCommand("boom", session));
+		cli.processCommand("echo a", session);
+		
+		FiCommandStats stats = cli.getMetrics().snapshot(boom);
+		assertEquals(1, stats.getInvocations());
+		assertEquals(1, stats.getErrors());
+		assertEquals(0, stats.getCount(FiState.VALID));
+		assertEquals(1, cli.getMetrics().getErrors());
+		assertEquals(1, cli.getMetrics().getCount(FiState.VALID));
+		
+		//A replacement with the same commandString carries on with the same counters
+		FiCommand replacement = new FiCommand("boom") {
+			@Override
+			public void execute(FiContext context) {
+			}
+		};
+		ArrayList<FiCommand> commands = new ArrayList<>(cli.getCommands());
+		commands.remove(boom);
+		commands.add(replacement);
+		cli.setCommands(commands);
+		
+		cli.processCommand("boom", session);
+		stats = cli.getMetrics().snapshot(replacement);
+		assertEquals(2, stats.getInvocations());
+		assertEquals(1, stats.getCount(FiState.VALID));
+	}
+	
+	@Test
+	void helpPatternIsTheRestOfTheLine() {
+		FiCaptureStream out = new FiCaptureStream();
+		FiCLI cli = createCLI(out);
+		cli.setHelpPageSize(1);
+		
+		for(String name : new String[] {"get", "get record", "get records", "get user"}) {
+			cli.addCommand(new FiCommand(name) {
+				@Override
+				public void execute(FiContext context) {
+				}
+			});
+		}
+		
+		cli.process("? get record*");
+		String listed = out.toString();
+		assertTrue(listed.contains("get record "));
+		assertTrue(listed.contains("enter \"? get record* 2\" for more"));
+		assertFalse(listed.contains("get user"));
+		
+		out.clear();
+		cli.process("? get record* 2");
+		assertTrue(out.toString().contains("get records"));
+		
+		out.clear();
+		cli.process("? get user");
+		assertTrue(out.toString().contains("get user"));
+		assertFalse(out.toString().contains("get record"));
+	}
+	
+	@Test
+	void helpIsRenderedAgainWhenRefreshed() {
+		FiCaptureStream out = new FiCaptureStream();
+		FiCLI cli = createCLI(out);
+		FiCommand hidden = new FiCommand("hidden") {
+			@Override
+			public void execute(FiContext context) {
+			}
+		};
+		cli.addCommand(hidden);
+		
+		cli.process("?");
+		assertTrue(out.toString().contains("hidden"));
+		
+		hidden.isVisible = false;
+		cli.refreshHelp();
+		out.clear();
+		cli.process("?");
+		assertFalse(out.toString().contains("hidden"));
+	}
+	
+	@Test
+	void removedCommandIsNoLongerFound() {
+		FiCaptureStream out = new FiCaptureStream();
+		FiCLI cli = createCLI(out);
+		FiCommand first = cli.getCommands().get(0);
+		
+		FiCommand second = new FiCommand("echo") {
+			@Override
+			public void execute(FiContext context) {
+				context.getOutputStream().println("second");
+			}
+		};
+		cli.addCommand(second);
+		
+		assertTrue(cli.removeCommand(first));
+		assertFalse(cli.removeCommand(first));
+		assertEquals(List.of(second), cli.getCommands());
+		
+		//The command that had the same commandString is found now
+		cli.process("echo a");
+		assertEquals("second\n", out.toString());
+		
+		assertTrue(cli.removeCommand(second));
+		assertEquals(FiState.INVALID, cli.process("echo a").state);
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class FiCaptureTest {
+	
+	private static FiCapture createCapture() {
+		FiCLI cli = new FiCLI((FiInputStream) null, new FiCaptureStream(), "?");
+		
+		cli.addCommand(new FiCommand("echo") {
+			@Override
+			public void execute(FiContext context) {
+				context.getOutputStream().println(String.join(" ", context.getArguments()));
+			}
+		});
+		
+		//Prints its input until the input ends
+		cli.addCommand(new FiCommand("cat") {
+			@Override
+			public void execute(FiContext context) {
+				String line;
+				while((line = context.getInputStream().readLine()) != null)
+					context.getOutputStream().println(line);
+			}
+		});
+		
+		//Reads one line and then fails
+		cli.addCommand(new FiCommand("fail") {
+			@Override
+			public void execute(FiContext context) {
+				context.getInputStream().readLine();
+				throw new IllegalStateException("fail");
+			}
+		});
+		
+		return new FiCapture(cli);
+	}
+	
+	@Test
+	void outputIsCapturedForEachRun() {
+		FiCapture capture = createCapture();
+		
+		FiCaptureResult result = capture.run("echo a b");
+		assertEquals(FiState.VALID, result.state.state);
+		assertEquals("a b\n", result.toString());
+		
+		//The output of the last run is cleared
+		result = capture.run("echo c");
+		assertEquals("c\n", result.getOutput().toString());
+		
+		result = capture.run("nothing");
+		assertEquals(FiState.INVALID, result.state.state);
+		assertEquals("", result.toString());
+	}
+	
+	@Test
+	void inputLinesAreReadByTheCommand() {
+		FiCapture capture = createCapture();
+		
+		assertEquals("x\ny\n", capture.run("cat", "x", "y").toString());
+		
+		//Lines are only given to the run they were passed to
+		assertEquals("", capture.run("cat").toString());
+	}
+	
+	@Test
+	void inputLinesDoNotLeakPastAFailedRun() {
+		FiCapture capture = createCapture();
+		
+		assertThrows(IllegalStateException.class, () -> capture.run("fail", "read", "unread"));
+		assertEquals("", capture.run("cat").toString());
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Reads lines from an {@link FiChannelInput} over a {@link Pipe}.
+ */
+class FiChannelInputTest {
+	
+	@Test
+	void longLinesAreDiscarded() throws IOException {
+		Pipe pipe = Pipe.open();
+		
+		try(FiChannelInput input = new FiChannelInput(pipe.source())) {
+			StringBuilder text = new StringBuilder();
+			text.append("a".repeat(FiServer.MAX_LINE_LENGTH + 1)).append('\n');
+			text.append("b".repeat(FiServer.MAX_LINE_LENGTH - 1)).append("\r\n");
+			text.append("next\n");
+			
+			Thread writer = write(pipe, text.toString());
+			
+			assertEquals("b".repeat(FiServer.MAX_LINE_LENGTH - 1), input.readLine(5, TimeUnit.SECONDS));
+			assertEquals("next", input.readLine(5, TimeUnit.SECONDS));
+			
+			join(writer);
+		}
+	}
+	
+	@Test
+	void endedInputKeepsReturningNull() throws IOException {
+		Pipe pipe = Pipe.open();
+		
+		try(FiChannelInput input = new FiChannelInput(pipe.source())) {
+			join(write(pipe, "first\nlast"));
+			pipe.sink().close();
+			
+			assertEquals("first", input.readLine(5, TimeUnit.SECONDS));
+			assertEquals("last", input.readLine(5, TimeUnit.SECONDS));
+			
+			for(int i = 0; i < 3; i++) {
+				assertNull(input.readLine(0, TimeUnit.SECONDS));
+				assertNull(input.readLine());
+				assertTrue(input.isAtEnd());
+			}
+		}
+	}
+	
+	@Test
+	void inputsCanBePolledFromOneSelector() throws IOException {
+		Pipe a = Pipe.open();
+		Pipe b = Pipe.open();
+		
+		try(Selector selector = Selector.open(); FiChannelInput inputA = new FiChannelInput(a.source()); FiChannelInput inputB = new FiChannelInput(b.source())) {
+			a.source().register(selector, SelectionKey.OP_READ, inputA);
+			b.source().register(selector, SelectionKey.OP_READ, inputB);
+			
+			join(write(b, "from b\n"));
+			selector.select(5000);
+			
+			assertEquals(1, selector.selectedKeys().size());
+			FiChannelInput ready = (FiChannelInput) selector.selectedKeys().iterator().next().attachment();
+			assertEquals("from b", ready.readLine(0, TimeUnit.SECONDS));
+			assertNull(inputA.readLine(0, TimeUnit.SECONDS));
+		}
+		
+		a.sink().close();
+		b.sink().close();
+	}
+	
+	@Test
+	void closedInputEndsTheSession() throws IOException {
+		Pipe pipe = Pipe.open();
+		FiChannelInput input = new FiChannelInput(pipe.source());
+		input.close();
+		
+		assertNull(input.readLine(0, TimeUnit.SECONDS));
+		assertTrue(input.isAtEnd());
+		
+		FiCLI cli = new FiCLI(input, new FiCaptureStream(), "?");
+		assertEquals(FiState.EXIT, cli.processCommand(cli.getSession(), 0, TimeUnit.SECONDS).state);
+		assertEquals(FiState.EXIT, cli.processCommand(cli.getSession(), 0, TimeUnit.SECONDS).state);
+		
+		pipe.sink().close();
+	}
+	
+	private static Thread write(Pipe pipe, String text) {
+		Thread writer = new Thread(() -> {
+			try {
+				ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+				while(bytes.hasRemaining())
+					pipe.sink().write(bytes);
+			} catch(IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		writer.start();
+		return writer;
+	}
+	
+	private static void join(Thread thread) {
+		try {
+			thread.join(5000);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
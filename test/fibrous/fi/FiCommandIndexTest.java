@@ -0,0 +1,152 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class FiCommandIndexTest {
+	
+	private static FiCommand command(String commandString) {
+		return new FiCommand(commandString) {
+			@Override
+			public void execute(FiContext context) {
+			}
+		};
+	}
+	
+	@Test
+	void longestCommandStringWins() {
+		FiCommand get = command("get");
+		FiCommand getAll = command("get all");
+		FiCommandIndex index = new FiCommandIndex().with(List.of(get, getAll));
+		
+		assertSame(get, index.find("get"));
+		assertSame(get, index.find("get 5"));
+		assertSame(get, index.find("get al"));
+		assertSame(getAll, index.find("get all"));
+		assertSame(getAll, index.find("get all 5"));
+		
+		//"get alley" isn't "get all" followed by arguments, so it is "get" with an argument
+		assertSame(get, index.find("get alley"));
+	}
+	
+	@Test
+	void commandStringMustEndAtASpace() {
+		FiCommandIndex index = new FiCommandIndex().with(List.of(command("get")));
+		
+		assertNull(index.find("getx"));
+		assertNull(index.find("ge"));
+		assertNull(index.find(""));
+		assertNull(index.find(" get"));
+	}
+	
+	@Test
+	void firstCommandWithACommandStringIsKept() {
+		FiCommand first = command("add");
+		FiCommandIndex index = new FiCommandIndex().with(List.of(first)).with(List.of(command("add")));
+		
+		assertSame(first, index.find("add 2 7"));
+	}
+	
+	@Test
+	void addingAndRemovingLeavesOlderIndexesAlone() {
+		FiCommand get = command("get");
+		FiCommand getAll = command("get all");
+		FiCommand put = command("put");
+		
+		FiCommandIndex before = new FiCommandIndex().with(List.of(get, getAll));
+		FiCommandIndex added = before.with(List.of(put));
+		assertNull(before.find("put"));
+		assertSame(put, added.find("put"));
+		
+		//Removing a command that is a prefix of another keeps the longer one
+		FiCommandIndex removed = added.without(get);
+		assertNull(removed.find("get 5"));
+		assertSame(getAll, removed.find("get all 5"));
+		assertSame(put, removed.find("put"));
+		assertSame(get, added.find("get 5"));
+		
+		//Removing the longer one drops its branch
+		FiCommandIndex empty = removed.without(getAll).without(put);
+		assertNull(empty.find("get all"));
+		assertNull(empty.find("put"));
+		assertTrue(empty.suggest("get al", 3).isEmpty());
+		assertSame(getAll, removed.find("get all"));
+		
+		//Removing a command that isn't indexed changes nothing
+		assertSame(removed, removed.without(get));
+		assertSame(removed, removed.without(command("put")));
+	}
+	
+	@Test
+	void suggestionsAreClosestFirst() {
+		FiCommandIndex index = new FiCommandIndex().with(List.of(command("menu"), command("mean"), command("get record"), command("get records")));
+		
+		assertEquals(List.of("menu"), index.suggest("mneu", 1));
+		assertEquals(List.of("get record", "get records"), index.suggest("get recrd 5", 3));
+		assertTrue(index.suggest("zzzzzz", 3).isEmpty());
+	}
+	
+	@Test
+	void hiddenCommandsAreNotSuggested() {
+		FiCommand hidden = command("secret");
+		hidden.isVisible = false;
+		FiCommandIndex index = new FiCommandIndex().with(List.of(hidden));
+		
+		assertTrue(index.suggest("secrt", 3).isEmpty());
+	}
+	
+	@Test
+	void suggestionsStopAfterMaxVisits() {
+		//Every command is one edit away from the query, and the exact match sorts after all of them
+		ArrayList<FiCommand> commands = new ArrayList<>();
+		for(int i = 0; i < FiCommandIndex.MAX_VISITS + 1000; i++)
+			commands.add(command("a" + (char) (0x100 + i)));
+		
+		String last = "a" + (char) 0xF000;
+		commands.add(command(last));
+		
+		assertEquals(List.of(last), new FiCommandIndex().with(List.of(command(last))).suggest(last, 3));
+		
+		List<String> suggestions = new FiCommandIndex().with(commands).suggest(last, 3);
+		assertEquals(3, suggestions.size());
+		assertFalse(suggestions.contains(last));
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class FiCommandMetricsTest {
+	
+	@Test
+	void everyBucketHoldsTheDurationsUpToItsBound() {
+		long lower = 0;
+		
+		for(int bucket = 0; bucket < FiCommandMetrics.BUCKETS; bucket++) {
+			long upper = FiCommandMetrics.upperBoundOf(bucket);
+			assertTrue(upper >= lower, "bucket " + bucket);
+			assertEquals(bucket, FiCommandMetrics.bucketOf(lower), "bucket " + bucket);
+			assertEquals(bucket, FiCommandMetrics.bucketOf(upper), "bucket " + bucket);
+			
+			lower = upper + 1;
+		}
+		
+		//Anything longer than the last bound is counted in the last bucket
+		assertEquals(FiCommandMetrics.BUCKETS - 1, FiCommandMetrics.bucketOf(lower));
+		assertEquals(FiCommandMetrics.BUCKETS - 1, FiCommandMetrics.bucketOf(Long.MAX_VALUE));
+		assertEquals(0, FiCommandMetrics.bucketOf(-5));
+	}
+	
+	@Test
+	void percentilesStayWithinABucket() {
+		FiCommandMetrics metrics = new FiCommandMetrics("cmd");
+		for(int i = 1; i <= 100; i++)
+			metrics.record(FiState.VALID, i * 1000L);
+		
+		FiCommandStats stats = new FiCommandStats(metrics);
+		long p50 = stats.getPercentileNanos(50);
+		assertTrue(p50 >= 50000 && p50 <= 50000 * 5 / 4, "p50 " + p50);
+		assertEquals(100000, stats.getPercentileNanos(100));
+	}
+}
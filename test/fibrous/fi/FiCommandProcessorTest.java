@@ -0,0 +1,208 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.junit.jupiter.api.Test;
+
+class FiCommandProcessorTest {
+	
+	private static final String SAMPLE =
+			"package sample;\n"
+			+ "import fibrous.fi.*;\n"
+			+ "public class Commands {\n"
+			+ "	@FiCommandDef(value = \"get record\", description = \"Displays a record\")\n"
+			+ "	@FiArg(value = \"id\", type = FiSchema.INT)\n"
+			+ "	public static void getRecord(FiContext context) {\n"
+			+ "		context.getOutputStream().println(\"record \" + context.getOptions().getInt(\"id\"));\n"
+			+ "	}\n"
+			+ "	@FiCommandDef(\"get\")\n"
+			+ "	public static void get(FiContext context) {\n"
+			+ "		context.getOutputStream().println(\"get\");\n"
+			+ "	}\n"
+			+ "	@FiCommandDef(value = \"list\", visible = false)\n"
+			+ "	public static void list(FiContext context) {\n"
+			+ "	}\n"
+			+ "}\n";
+	
+	private static final String BROKEN =
+			"package broken;\n"
+			+ "import fibrous.fi.*;\n"
+			+ "public class Commands {\n"
+			+ "	@FiCommandDef(\"twice\")\n"
+			+ "	public static void first(FiContext context) {\n"
+			+ "	}\n"
+			+ "	@FiCommandDef(\"twice\")\n"
+			+ "	public static void second(FiContext context) {\n"
+			+ "	}\n"
+			+ "	@FiCommandDef(\"instance\")\n"
+			+ "	public void instance(FiContext context) {\n"
+			+ "	}\n"
+			+ "	@FiCommandDef(\"format\")\n"
+			+ "	@FiArg(value = \"f\", flag = true, values = {\"json\", \"text\"}, defaultValue = \"xml\")\n"
+			+ "	public static void format(FiContext context) {\n"
+			+ "	}\n"
+			+ "}\n";
+	
+	@Test
+	void generatesTableForSample() throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if(compiler == null)
+			return;
+		
+		Path dir = Files.createTempDirectory("processor");
+		try {
+			DiagnosticCollector<JavaFileObject> diagnostics = compile(compiler, dir, "sample", SAMPLE);
+			assertTrue(errors(diagnostics).isEmpty(), errors(diagnostics).toString());
+			
+			try(URLClassLoader loader = new URLClassLoader(new java.net.URL[] {dir.resolve("classes").toUri().toURL()}, FiCommandProcessorTest.class.getClassLoader())) {
+				FiCommandTable table = (FiCommandTable) loader.loadClass("sample." + FiCommandProcessor.TABLE_NAME).getConstructor().newInstance();
+				
+				FiCommand[] commands = table.getCommands();
+				assertEquals(3, commands.length);
+				assertEquals("get", commands[0].commandString);
+				assertEquals("get record", commands[1].commandString);
+				assertEquals("list", commands[2].commandString);
+				assertFalse(commands[2].isVisible);
+				
+				assertEquals("get record", table.find("get record 5").commandString);
+				assertEquals("get record", table.find("get record").commandString);
+				assertEquals("get", table.find("get recordx").commandString);
+				assertEquals("get", table.find("get").commandString);
+				assertEquals("list", table.find("list").commandString);
+				assertNull(table.find("lis"));
+				assertNull(table.find("gets"));
+				assertNull(table.find(""));
+				
+				FiCaptureStream out = new FiCaptureStream();
+				FiCLI cli = new FiCLI((FiInputStream) null, out, "?");
+				cli.addCommands(table);
+				
+				assertEquals(FiState.VALID, cli.processCommand("get record 7", new FiSession(null, out)).state);
+				assertEquals("record 7\n", out.getOutput().toString());
+				assertEquals(FiState.INVALID_ARGUMENTS, cli.processCommand("get record x", new FiSession(null, out)).state);
+				
+				//The table's array isn't shared with the FiCLI
+				commands[0] = null;
+				assertEquals(3, cli.getCommands().size());
+				assertEquals("get", cli.getCommands().get(0).commandString);
+			}
+		} finally {
+			delete(dir);
+		}
+	}
+	
+	@Test
+	void reportsInvalidDeclarations() throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if(compiler == null)
+			return;
+		
+		Path dir = Files.createTempDirectory("processor");
+		try {
+			List<String> errors = errors(compile(compiler, dir, "broken", BROKEN));
+			
+			assertTrue(contains(errors, "\"twice\" is declared more than once"), errors.toString());
+			assertTrue(contains(errors, "must be public static methods"), errors.toString());
+			assertTrue(contains(errors, "\"xml\" is not one of json, text"), errors.toString());
+		} finally {
+			delete(dir);
+		}
+	}
+	
+	/**
+	 * Compiles one source file with the processor, against the classes the tests run with.
+	 */
+	private static DiagnosticCollector<JavaFileObject> compile(JavaCompiler compiler, Path dir, String pkg, String source) throws IOException {
+		Path file = dir.resolve("src").resolve(pkg).resolve("Commands.java");
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, source);
+		Files.createDirectories(dir.resolve("classes"));
+		Files.createDirectories(dir.resolve("generated"));
+		
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		try(StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, null)) {
+			List<String> options = List.of("-classpath", System.getProperty("java.class.path"),
+					"-d", dir.resolve("classes").toString(), "-s", dir.resolve("generated").toString());
+			
+			JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics, options, null, files.getJavaFileObjects(file));
+			task.setProcessors(List.of(new FiCommandProcessor()));
+			task.call();
+		}
+		
+		return diagnostics;
+	}
+	
+	private static List<String> errors(DiagnosticCollector<JavaFileObject> diagnostics) {
+		ArrayList<String> errors = new ArrayList<>();
+		for(Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+			if(d.getKind() == Diagnostic.Kind.ERROR)
+				errors.add(d.getMessage(null));
+		}
+		
+		return errors;
+	}
+	
+	private static boolean contains(List<String> messages, String text) {
+		for(String m : messages) {
+			if(m.contains(text))
+				return true;
+		}
+		
+		return false;
+	}
+	
+	private static void delete(Path dir) throws IOException {
+		try(Stream<Path> paths = Files.walk(dir)) {
+			for(Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+				Files.delete(p);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that dispatching a known command through an {@link FiDispatcher} doesn't allocate anything once it has warmed up,
+ * so the build fails on an allocation regression.
+ * Bytes allocated are measured with the per thread counter of the JVM.
+ */
+class FiDispatcherAllocationTest {
+	
+	//Allows for the odd allocation by the JVM itself during a measurement
+	private static final double MAX_BYTES_PER_DISPATCH = 1.0;
+	
+	private static final int WARMUP = 500_000;
+	private static final int DISPATCHES = 200_000;
+	private static final int ROUNDS = 5;
+	
+	/**
+	 * Discards everything written to it.
+	 */
+	private static final class NullOutput implements FiOutputStream {
+		
+		@Override
+		public void print(String s) {
+		}
+		
+		@Override
+		public void println(String s) {
+		}
+	}
+	
+	/**
+	 * A command that does nothing, so only dispatching is measured.
+	 */
+	private static final class NoOpCommand extends FiCommand {
+		
+		NoOpCommand(String commandString) {
+			super(commandString);
+		}
+		
+		@Override
+		public void execute(FiContext context) {
+		}
+	}
+	
+	/**
+	 * A command that reads typed options, to check that parsing them doesn't allocate.
+	 */
+	private static final class TypedCommand extends FiCommand {
+		
+		long total;
+		
+		TypedCommand(String commandString) {
+			super(commandString);
+			
+			schema = new FiSchema();
+			schema.positional("id", FiSchema.INT);
+			schema.positional("count", FiSchema.LONG).defaultValue("1");
+			schema.flag("v", FiSchema.BOOLEAN);
+			schema.flag("r", FiSchema.DOUBLE);
+		}
+		
+		@Override
+		public void execute(FiContext context) {
+			FiOptions options = context.getOptions();
+			total += options.getInt("id") + options.getLong("count") + (options.getBoolean("v") ? 1 : 0) + (long) options.getDouble("r");
+		}
+	}
+	
+	private static String commandString(int i) {
+		String name = "cmd" + Integer.toString(i, 36);
+		return (i & 1) == 0 ? name : name + " record";
+	}
+	
+	private static FiCLI createCLI() {
+		FiCLI cli = new FiCLI((FiInputStream) null, new NullOutput(), "?");
+		
+		ArrayList<FiCommand> commands = new ArrayList<>();
+		for(int i = 0; i < 1000; i++)
+			commands.add(new NoOpCommand(commandString(i)));
+		
+		cli.addCommands(commands);
+		cli.addCommand(new TypedCommand("get id"));
+		return cli;
+	}
+	
+	@Test
+	void plainCommand() {
+		check(new FiDispatcher(createCLI()), commandString(17) + " 12 abc", commandString(500) + " \"two words\" 'x'", commandString(3));
+	}
+	
+	@Test
+	void typedOptions() {
+		check(new FiDispatcher(createCLI()), "get id 42", "get id 7 99999999999 -v", "get id -3 -v", "get id 5 -r 2.5", "get id 5 -r -1.25e3");
+	}
+	
+	@Test
+	void exitString() {
+		check(new FiDispatcher(createCLI()), "exit");
+	}
+	
+	@Test
+	void plainCommandWithMetrics() {
+		FiCLI cli = createCLI();
+		cli.setMetricsEnabled(true);
+		check(new FiDispatcher(cli), commandString(17) + " 12 abc", commandString(3));
+	}
+	
+	/**
+	 * Measures the fewest bytes per dispatch over a few rounds, so a single unlucky round doesn't fail the check.
+	 */
+	private static void check(FiDispatcher dispatcher, String... lines) {
+		//Only some JVMs can measure allocation
+		if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean))
+			return;
+		
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		
+		for(int i = 0; i < WARMUP; i++)
+			dispatcher.dispatch(lines[i % lines.length]);
+		
+		double best = Double.MAX_VALUE;
+		for(int round = 0; round < ROUNDS; round++) {
+			long before = threads.getThreadAllocatedBytes(thread);
+			
+			for(int i = 0; i < DISPATCHES; i++)
+				dispatcher.dispatch(lines[i % lines.length]);
+			
+			long after = threads.getThreadAllocatedBytes(thread);
+			best = Math.min(best, (double) (after - before) / DISPATCHES);
+		}
+		
+		assertTrue(best <= MAX_BYTES_PER_DISPATCH, String.format("%.3f bytes allocated per dispatch", best));
+	}
+}
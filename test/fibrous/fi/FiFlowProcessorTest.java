@@ -0,0 +1,131 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Feeds lines to an {@link FiFlowProcessor} and checks which states are published or dropped.
+ */
+class FiFlowProcessorTest {
+	
+	@Test
+	void statesWithoutSubscribersAreReported() {
+		FiCLI cli = cli();
+		ArrayList<FiState> reported = new ArrayList<>();
+		FiFlowProcessor processor = new FiFlowProcessor(cli, cli.getSession(), Runnable::run, 4) {
+			@Override
+			protected void handleDroppedState(FiState state) {
+				reported.add(state);
+			}
+		};
+		
+		feed(processor, 3);
+		
+		assertEquals(3, processor.getDroppedStates());
+		assertEquals(3, reported.size());
+		assertEquals(FiState.VALID, reported.get(0).state);
+	}
+	
+	@Test
+	void stalledSubscriberDoesNotStopTheLines() {
+		FiCLI cli = cli();
+		FiFlowProcessor processor = new FiFlowProcessor(cli, cli.getSession(), Runnable::run, 1, 0, TimeUnit.MILLISECONDS);
+		
+		ArrayList<FiState> received = new ArrayList<>();
+		processor.subscribe(new Flow.Subscriber<FiState>() {
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				//Never requests anything, so its buffer fills up
+			}
+			
+			@Override
+			public void onNext(FiState item) {
+				received.add(item);
+			}
+			
+			@Override
+			public void onError(Throwable throwable) {
+			}
+			
+			@Override
+			public void onComplete() {
+			}
+		});
+		
+		int requested = feed(processor, 100);
+		
+		//Every line was still requested and processed
+		assertEquals(101, requested);
+		assertTrue(received.isEmpty());
+		assertTrue(processor.getDroppedStates() > 0);
+	}
+	
+	private static FiCLI cli() {
+		FiCLI cli = new FiCLI((FiInputStream) null, new FiCaptureStream(), "?");
+		cli.addCommand(new FiCommand("ping") {
+			@Override
+			public void execute(FiContext context) {
+			}
+		});
+		
+		return cli;
+	}
+	
+	/**
+	 * Passes the lines straight to the processor, returning how many lines it requested.
+	 */
+	private static int feed(FiFlowProcessor processor, int lines) {
+		int[] requested = new int[1];
+		processor.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+				requested[0] += n;
+			}
+			
+			@Override
+			public void cancel() {
+			}
+		});
+		
+		for(int i = 0; i < lines; i++)
+			processor.onNext("ping");
+		
+		return requested[0];
+	}
+}
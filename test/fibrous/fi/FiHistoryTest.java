@@ -0,0 +1,93 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class FiHistoryTest {
+	
+	private static final String[] QUERIES = {"", "a", "ab", "abc", "bca", "cab", "c", "zz", "abcab", "ba"};
+	
+	@Test
+	void searchesMatchEveryLine() throws Exception {
+		Path file = Files.createTempFile("history", ".fi");
+		Files.delete(file);
+		
+		try {
+			//Small enough that old lines are removed while adding
+			FiHistory history = FiHistory.open(file, 2048);
+			Random random = new Random(1);
+			for(int n = 0; n < 2000; n++) {
+				StringBuilder line = new StringBuilder();
+				for(int i = random.nextInt(8); i >= 0; i--)
+					line.append((char) ('a' + random.nextInt(3)));
+				
+				history.add(line.toString());
+				if(n % 97 == 0)
+					check(history);
+			}
+			
+			history.close();
+			
+			history = FiHistory.open(file, 2048);
+			check(history);
+			history.close();
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	private static void check(FiHistory history) {
+		int size = history.size();
+		for(String query : QUERIES) {
+			for(int before = 0; before <= size + 1; before++) {
+				assertEquals(scan(history, query, before, false), history.search(query, before), query);
+				assertEquals(scan(history, query, before, true), history.searchPrefix(query, before), query);
+			}
+		}
+	}
+	
+	private static int scan(FiHistory history, String text, int before, boolean prefix) {
+		for(int i = Math.min(before, history.size()) - 1; i >= 0; i--) {
+			String line = history.get(i);
+			if(prefix ? line.startsWith(text) : line.contains(text))
+				return i;
+		}
+		
+		return -1;
+	}
+}
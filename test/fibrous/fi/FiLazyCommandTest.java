@@ -0,0 +1,144 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class FiLazyCommandTest {
+	
+	@Test
+	void flagsComeFromTheRealCommand() {
+		FiCLI cli = new FiCLI((FiInputStream) null, new FiCaptureStream(), "?");
+		cli.setExecutor(Runnable::run);
+		
+		FiCommand placeholder = cli.addCommand("slow", "Runs on the executor", () -> {
+			FiCommand c = new FiCommand("slow") {
+				@Override
+				public void execute(FiContext context) {
+					context.getOutputStream().println("done");
+				}
+			};
+			c.isAsync = true;
+			c.isIndependent = true;
+			c.cacheTTL = 1000;
+			return c;
+		});
+		
+		FiCaptureStream out = new FiCaptureStream();
+		FiSession session = new FiSession(null, out);
+		assertEquals(FiState.VALID, cli.processCommandAsync("slow", session).join().state);
+		
+		assertTrue(placeholder.isAsync);
+		assertTrue(placeholder.isIndependent);
+		assertEquals(1000, placeholder.cacheTTL);
+		assertSame(((FiLazyCommand) placeholder).getCreated(), cli.findIndependent("slow"));
+		
+		cli.processCommand("slow", session);
+		assertEquals(1, cli.getResultCache().getHits());
+	}
+	
+	@Test
+	void lazyMenuIsAMenu() {
+		FiCLI cli = new FiCLI((FiInputStream) null, new FiCaptureStream(), "?");
+		cli.addCommand("tools", "Tools", () -> {
+			FiMenu menu = new FiMenu("tools");
+			menu.addCommand(new FiCommand("echo") {
+				@Override
+				public void execute(FiContext context) {
+					context.getOutputStream().println(String.join(" ", context.getArguments()));
+				}
+			});
+			return menu;
+		});
+		
+		FiCaptureStream out = new FiCaptureStream();
+		FiSession session = new FiSession(null, out);
+		
+		assertEquals(FiState.VALID, cli.processCommand("tools echo hi", session).state);
+		assertEquals(0, session.getMenuDepth());
+		assertTrue(out.getOutput().toString().contains("hi"));
+		
+		assertEquals(FiState.VALID, cli.processCommand("tools", session).state);
+		assertEquals(1, session.getMenuDepth());
+	}
+	
+	@Test
+	void completionDoesNotCreateCommands() {
+		FiCLI cli = new FiCLI((FiInputStream) null, new FiCaptureStream(), "?");
+		AtomicInteger created = new AtomicInteger();
+		cli.addCommand("heavy", "Expensive to create", () -> {
+			created.incrementAndGet();
+			FiCommand c = new FiCommand("heavy") {
+				@Override
+				public void execute(FiContext context) {
+				}
+			};
+			c.schema = new FiSchema();
+			c.schema.positional("mode", FiSchema.STRING).values("fast", "slow");
+			return c;
+		});
+		
+		FiSession session = new FiSession(null, new FiCaptureStream());
+		assertTrue(cli.complete("heavy f", session, 10).getCandidates().isEmpty());
+		assertEquals(0, created.get());
+		
+		cli.processCommand("heavy fast", session);
+		assertEquals(1, created.get());
+		assertEquals("fast", cli.complete("heavy f", session, 10).getCommonPrefix());
+	}
+	
+	@Test
+	void completionUsesThePlaceholderSchema() {
+		FiCLI cli = new FiCLI((FiInputStream) null, new FiCaptureStream(), "?");
+		AtomicInteger created = new AtomicInteger();
+		FiCommand placeholder = cli.addCommand("heavy", "Expensive to create", () -> {
+			created.incrementAndGet();
+			return new FiCommand("heavy") {
+				@Override
+				public void execute(FiContext context) {
+				}
+			};
+		});
+		placeholder.schema = new FiSchema();
+		placeholder.schema.positional("mode", FiSchema.STRING).values("fast", "slow");
+		
+		FiSession session = new FiSession(null, new FiCaptureStream());
+		assertEquals(List.of("slow"), cli.complete("heavy s", session, 10).getCandidates());
+		assertEquals(0, created.get());
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs commands in an {@link FiMenu}, both by entering it and through their whole path.
+ */
+class FiMenuTest {
+	
+	@Test
+	void pathIsCountedInTheMenuMetrics() {
+		FiCaptureStream out = new FiCaptureStream();
+		FiCLI cli = new FiCLI((FiInputStream) null, out, "?");
+		FiMenu menu = createMenu("menu");
+		cli.addCommand(menu);
+		menu.getCLI().setMetricsEnabled(true);
+		
+		FiSession session = new FiSession(null, out);
+		assertEquals(FiState.VALID, cli.processCommand("menu add 2 7", session).state);
+		assertEquals("9\n", out.toString());
+		
+		FiMetrics metrics = menu.getCLI().getMetrics();
+		assertEquals(1, metrics.getCount(FiState.VALID));
+		assertEquals(1, metrics.snapshot().get(0).getInvocations());
+	}
+	
+	@Test
+	void backThroughAPathDoesNothing() {
+		FiCaptureStream out = new FiCaptureStream();
+		FiCLI cli = new FiCLI((FiInputStream) null, out, "?");
+		FiMenu menu = createMenu("menu");
+		FiMenu inner = createMenu("inner");
+		menu.addCommand(inner);
+		cli.addCommand(menu);
+		
+		FiSession session = new FiSession(null, out);
+		assertEquals(FiState.VALID, cli.processCommand("menu back", session).state);
+		assertEquals(0, session.getMenuDepth());
+		
+		//Inside of a menu, backing out of a menu that was never entered stays in the current one
+		cli.processCommand("menu", session);
+		assertEquals(FiState.VALID, cli.processCommand("inner back", session).state);
+		assertEquals(1, session.getMenuDepth());
+		assertSame(menu, session.getMenu());
+		
+		assertEquals(FiState.BACK, cli.processCommand("back", session).state);
+		assertEquals(0, session.getMenuDepth());
+	}
+	
+	private static FiMenu createMenu(String commandString) {
+		FiMenu menu = new FiMenu(commandString);
+		menu.addCommand(new FiCommand("add") {
+			@Override
+			public void execute(FiContext context) {
+				int sum = Integer.parseInt(context.getArguments().get(0)) + Integer.parseInt(context.getArguments().get(1));
+				context.getOutputStream().println(Integer.toString(sum));
+			}
+		});
+		
+		return menu;
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Passes lines through an {@link FiPipe} directly, and through pipelines of commands.
+ */
+class FiPipeTest {
+	
+	@Test
+	void partialLastLineIsPassedOnWhenClosed() {
+		FiPipe pipe = new FiPipe(4);
+		pipe.print("a");
+		pipe.print("b\nc");
+		pipe.close();
+		
+		assertEquals("ab", pipe.readLine());
+		assertEquals("c", pipe.readLine());
+		assertNull(pipe.readLine());
+		assertTrue(pipe.isAtEnd());
+	}
+	
+	@Test
+	void cancelledPipeStopsTheProducer() {
+		FiPipe pipe = new FiPipe(4);
+		pipe.println("a");
+		pipe.cancel();
+		
+		assertTrue(pipe.isCancelled());
+		assertNull(pipe.readLine());
+		assertThrows(CancellationException.class, () -> pipe.println("b"));
+		
+		//Closing after the consumer has gone doesn't throw
+		pipe.print("partial");
+		pipe.close();
+	}
+	
+	@Test
+	void consumerReturningEarlyStopsTheProducer() {
+		FiCaptureStream out = new FiCaptureStream();
+		FiCLI cli = createCLI(out);
+		cli.setPipeCapacity(2);
+		
+		AtomicInteger written = new AtomicInteger();
+		AtomicBoolean stopped = new AtomicBoolean();
+		cli.addCommand(new FiCommand("forever") {
+			@Override
+			public void execute(FiContext context) {
+				try {
+					while(true) {
+						context.getOutputStream().println(Integer.toString(written.get()));
+						written.incrementAndGet();
+					}
+				} catch(CancellationException e) {
+					stopped.set(true);
+					throw e;
+				}
+			}
+		});
+		
+		assertEquals(FiState.VALID, cli.process("forever | head 3").state);
+		assertEquals("0\n1\n2\n", out.toString());
+		assertTrue(stopped.get());
+	}
+	
+	@Test
+	void boundedExecutorDoesNotHoldUpThePipeline() throws InterruptedException {
+		FiCaptureStream out = new FiCaptureStream();
+		FiCLI cli = createCLI(out);
+		cli.setPipeCapacity(1);
+		
+		ExecutorService single = Executors.newSingleThreadExecutor();
+		cli.setExecutor(single);
+		
+		cli.addCommand(new FiCommand("count") {
+			@Override
+			public void execute(FiContext context) {
+				int n = Integer.parseInt(context.getArguments().get(0));
+				for(int i = 0; i < n; i++)
+					context.getOutputStream().println(Integer.toString(i));
+			}
+		});
+		
+		Thread dispatch = new Thread(() -> cli.process("count 50 | copy | copy | head 50"));
+		dispatch.start();
+		dispatch.join(10000);
+		single.shutdownNow();
+		
+		assertFalse(dispatch.isAlive());
+		assertTrue(out.toString().startsWith("0\n1\n2\n"));
+		assertTrue(out.toString().endsWith("49\n"));
+	}
+	
+	private static FiCLI createCLI(FiCaptureStream out) {
+		FiCLI cli = new FiCLI((FiInputStream) null, out, "?");
+		cli.allowPipelines(true);
+		
+		cli.addCommand(new FiCommand("head") {
+			@Override
+			public void execute(FiContext context) {
+				int n = Integer.parseInt(context.getArguments().get(0));
+				for(int i = 0; i < n; i++) {
+					String line = context.getInputStream().readLine();
+					if(line == null)
+						return;
+					
+					context.getOutputStream().println(line);
+				}
+			}
+		});
+		
+		cli.addCommand(new FiCommand("copy") {
+			@Override
+			public void execute(FiContext context) {
+				String line;
+				while((line = context.getInputStream().readLine()) != null)
+					context.getOutputStream().println(line);
+			}
+		});
+		
+		return cli;
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class FiResultCacheTest {
+	
+	/**
+	 * Remembers every call, so a replay can be compared with the original.
+	 */
+	private static final class CallStream implements FiOutputStream {
+		
+		final List<String> calls = new ArrayList<>();
+		
+		@Override
+		public void print(String s) {
+			calls.add("print " + s);
+		}
+		
+		@Override
+		public void println(String s) {
+			calls.add("println " + s);
+		}
+	}
+	
+	@Test
+	void replayMakesTheSameCalls() {
+		FiCLI cli = new FiCLI((FiInputStream) null, new FiCaptureStream(), "?");
+		cli.setMetricsEnabled(true);
+		
+		FiCommand show = new FiCommand("show") {
+			@Override
+			public void execute(FiContext context) {
+				context.getOutputStream().print("a: ");
+				context.getOutputStream().println(context.getArguments().get(0));
+				context.getOutputStream().print("x\ny");
+			}
+		};
+		show.cacheTTL = 60_000;
+		cli.addCommand(show);
+		
+		CallStream first = new CallStream();
+		cli.processCommand("show 1", new FiSession(null, first));
+		
+		CallStream second = new CallStream();
+		cli.processCommand("show  1", new FiSession(null, second));
+		
+		assertEquals(List.of("print a: ", "println 1", "print x\ny"), first.calls);
+		assertEquals(first.calls, second.calls);
+		assertEquals(1, cli.getResultCache().getHits());
+		
+		//The hit isn't an execution, so it doesn't pull down the execution times
+		FiCommandStats stats = cli.getMetrics().snapshot(show);
+		assertEquals(1, stats.getInvocations());
+		assertEquals(1, stats.getCacheHits());
+		assertEquals(2, stats.getCount(FiState.VALID));
+	}
+}
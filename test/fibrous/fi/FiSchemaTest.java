@@ -0,0 +1,110 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class FiSchemaTest {
+	
+	@Test
+	void simpleDoublesMatchParseDouble() {
+		String[] fixed = {"0", "-0", "1.", ".5", "-12.5", "3e4", "1E-5", "+7", "123456789012345", "0.1", "0.3", "9007199254740.993",
+				"1e22", "1e-22", "4.35", "2.675", "1e23", "1234567890123456", "1e", ".", "-", "1.5d", "0x10", "NaN", "Infinity", "1e1000"};
+		
+		for(String s : fixed)
+			check(s);
+		
+		Random random = new Random(7);
+		for(int n = 0; n < 100_000; n++) {
+			StringBuilder sb = new StringBuilder();
+			if(random.nextBoolean())
+				sb.append('-');
+			
+			int digits = 1 + random.nextInt(17);
+			int point = random.nextInt(digits + 1);
+			for(int i = 0; i < digits; i++) {
+				if(i == point)
+					sb.append('.');
+				sb.append((char) ('0' + random.nextInt(10)));
+			}
+			
+			if(random.nextInt(4) == 0)
+				sb.append('e').append(random.nextInt(50) - 25);
+			
+			check(sb.toString());
+		}
+	}
+	
+	private static void check(String s) {
+		double fast = FiSchema.parseSimpleDouble(s);
+		if(Double.isNaN(fast))
+			return;
+		
+		assertEquals(Double.doubleToRawLongBits(Double.parseDouble(s)), Double.doubleToRawLongBits(fast), s);
+	}
+	
+	@Test
+	void defaultMustBeAnAllowedValue() {
+		FiSchema schema = new FiSchema();
+		assertThrows(IllegalArgumentException.class, () -> schema.flag("a", FiSchema.STRING).values("x", "y").defaultValue("z"));
+		assertThrows(IllegalArgumentException.class, () -> schema.flag("b", FiSchema.STRING).defaultValue("z").values("x", "y"));
+		
+		schema.flag("c", FiSchema.STRING).values("x", "y").defaultValue("y");
+		
+		FiOptions options = new FiOptions();
+		assertEquals(null, schema.parse(new FiArguments(), options));
+		assertEquals("y", options.getString("c"));
+	}
+	
+	@Test
+	void gettersTakeAnIndex() {
+		FiSchema schema = new FiSchema();
+		int a = schema.positional("a", FiSchema.INT).getIndex();
+		int r = schema.flag("r", FiSchema.DOUBLE).getIndex();
+		
+		FiArguments args = new FiArguments();
+		FiTokenizer.tokenize("4 -r 0.5", 0, args);
+		
+		FiOptions options = new FiOptions();
+		assertEquals(null, schema.parse(args, options));
+		assertEquals(4, options.getInt(a));
+		assertEquals(0.5, options.getDouble(r));
+		assertTrue(options.isSet(r));
+		assertEquals(a, schema.indexOf("a"));
+		assertThrows(IllegalArgumentException.class, () -> options.getInt(r));
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+class FiScriptRunnerTest {
+	
+	private static FiCLI createCLI() {
+		FiCLI cli = new FiCLI((FiInputStream) null, new FiCaptureStream(), "?");
+		
+		FiCommand echo = new FiCommand("echo") {
+			@Override
+			public void execute(FiContext context) {
+				context.getOutputStream().println(context.getArguments().get(0));
+			}
+		};
+		echo.isIndependent = true;
+		cli.addCommand(echo);
+		
+		FiCommand boom = new FiCommand("boom") {
+			@Override
+			public void execute(FiContext context) {
+				throw new IllegalStateException("boom");
+			}
+		};
+		boom.isIndependent = true;
+		cli.addCommand(boom);
+		
+		return cli;
+	}
+	
+	@Test
+	void failingIndependentCommandKeepsTheOthersOutput() throws Exception {
+		FiCLI cli = createCLI();
+		FiCaptureStream out = new FiCaptureStream();
+		
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			FiScriptRunner runner = new FiScriptRunner(cli);
+			runner.setParallelism(4);
+			runner.setExecutor(pool);
+			
+			String script = "echo a\nboom\necho b\necho c\n";
+			assertThrows(IllegalStateException.class, () -> runner.run(new StringReader(script), new FiSession(null, out)));
+		} finally {
+			pool.shutdown();
+		}
+		
+		assertEquals("a\nb\nc\n", out.getOutput().toString());
+	}
+	
+	@Test
+	void suggestionsOnlyWhenAskedFor() throws Exception {
+		FiCLI cli = createCLI();
+		FiSession session = new FiSession(null, new FiCaptureStream());
+		FiScriptRunner runner = new FiScriptRunner(cli);
+		
+		FiScriptResult result = runner.run(new StringReader("ecko a\n"), session);
+		assertEquals(1, result.getCount(FiState.INVALID));
+		assertTrue(result.getInvalidLines().get(0).suggestions.isEmpty());
+		
+		runner.setSuggestions(true);
+		result = runner.run(new StringReader("ecko a\n"), session);
+		assertEquals("echo", result.getInvalidLines().get(0).suggestions.get(0));
+	}
+}
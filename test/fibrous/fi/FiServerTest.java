@@ -0,0 +1,182 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs an {@link FiServer} over loopback with real client sockets.
+ */
+class FiServerTest {
+	
+	private FiServer server;
+	private Thread serverThread;
+	private SocketAddress address;
+	private final AtomicInteger closedSessions = new AtomicInteger();
+	
+	@BeforeEach
+	void start() throws IOException {
+		FiCLI cli = new FiCLI((FiInputStream) null, new FiCaptureStream(), "?");
+		
+		cli.addCommand(new FiCommand("echo") {
+			@Override
+			public void execute(FiContext context) {
+				context.getOutputStream().println(String.join(" ", context.getArguments()));
+			}
+		});
+		
+		cli.addCommand(new FiCommand("boom") {
+			@Override
+			public void execute(FiContext context) {
+				throw new IllegalStateException("boom failed");
+			}
+		});
+		
+		FiCommand asyncBoom = new FiCommand("async boom") {
+			@Override
+			public void execute(FiContext context) {
+				throw new IllegalStateException("async boom failed");
+			}
+		};
+		asyncBoom.isAsync = true;
+		cli.addCommand(asyncBoom);
+		
+		server = new FiServer(cli) {
+			@Override
+			protected void sessionClosed(FiSession session) {
+				closedSessions.incrementAndGet();
+			}
+		};
+		address = server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		serverThread = new Thread(server);
+		serverThread.start();
+	}
+	
+	@AfterEach
+	void stop() throws Exception {
+		server.close();
+		serverThread.join(5000);
+	}
+	
+	@Test
+	void failingCommandOnlyAffectsItsClient() throws IOException {
+		try(Socket a = connect(); Socket b = connect()) {
+			readUntil(a, "> ");
+			readUntil(b, "> ");
+			
+			send(a, "boom");
+			assertTrue(readUntil(a, "> ").contains("boom failed"));
+			
+			send(b, "echo hello");
+			assertEquals("hello\n> ", readUntil(b, "> "));
+			
+			//The failing client is still connected and served
+			send(a, "echo again");
+			assertEquals("again\n> ", readUntil(a, "> "));
+			assertEquals(2, server.numOfConnections());
+		}
+	}
+	
+	@Test
+	void failingAsyncCommandIsReported() throws IOException {
+		try(Socket a = connect(); Socket b = connect()) {
+			readUntil(a, "> ");
+			readUntil(b, "> ");
+			
+			send(a, "async boom");
+			assertTrue(readUntil(a, "> ").contains("async boom failed"));
+			
+			send(b, "echo still here");
+			assertEquals("still here\n> ", readUntil(b, "> "));
+		}
+	}
+	
+	@Test
+	void closeClosesConnectedClients() throws IOException {
+		try(Socket a = connect(); Socket b = connect()) {
+			readUntil(a, "> ");
+			readUntil(b, "> ");
+			assertEquals(2, server.numOfConnections());
+			
+			server.close();
+			
+			assertEquals(0, server.numOfConnections());
+			assertEquals(2, closedSessions.get());
+			assertEquals(-1, a.getInputStream().read());
+			assertEquals(-1, b.getInputStream().read());
+		}
+	}
+	
+	private Socket connect() throws IOException {
+		InetSocketAddress inet = (InetSocketAddress) address;
+		Socket socket = new Socket(inet.getAddress(), inet.getPort());
+		socket.setSoTimeout(5000);
+		return socket;
+	}
+	
+	private static void send(Socket socket, String line) throws IOException {
+		socket.getOutputStream().write((line + "\n").getBytes(StandardCharsets.UTF_8));
+		socket.getOutputStream().flush();
+	}
+	
+	/**
+	 * Reads until the output ends with the given text, such as the caret.
+	 */
+	private static String readUntil(Socket socket, String end) throws IOException {
+		InputStream in = socket.getInputStream();
+		ByteArrayOutputStream read = new ByteArrayOutputStream();
+		
+		while(!read.toString(StandardCharsets.UTF_8).endsWith(end)) {
+			int b = in.read();
+			if(b < 0)
+				throw new IOException("The server closed the connection after \"" + read.toString(StandardCharsets.UTF_8) + "\"");
+			
+			read.write(b);
+		}
+		
+		return read.toString(StandardCharsets.UTF_8);
+	}
+}
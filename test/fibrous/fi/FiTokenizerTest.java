@@ -0,0 +1,114 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Noah McLean
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fibrous.fi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class FiTokenizerTest {
+	
+	private static List<String> tokenize(String input) {
+		FiArguments args = new FiArguments();
+		FiTokenizer.tokenize(input, 0, args);
+		return List.copyOf(args);
+	}
+	
+	@Test
+	void runsOfWhitespaceSeparateArguments() {
+		assertEquals(List.of("a", "b", "c"), tokenize("  a \t b    c\t"));
+		assertEquals(List.of(), tokenize(""));
+		assertEquals(List.of(), tokenize(" \t "));
+	}
+	
+	@Test
+	void tokenizingStartsAfterTheCommandString() {
+		FiArguments args = new FiArguments();
+		FiTokenizer.tokenize("add 2 7", 3, args);
+		assertEquals(List.of("2", "7"), args);
+		
+		//Arguments from the last line are removed
+		FiTokenizer.tokenize("add", 3, args);
+		assertEquals(List.of(), args);
+	}
+	
+	@Test
+	void quotesKeepSpaces() {
+		assertEquals(List.of("a b", "c  d"), tokenize("\"a b\" 'c  d'"));
+		assertEquals(List.of("say \"hi\""), tokenize("'say \"hi\"'"));
+		assertEquals(List.of("it's"), tokenize("\"it's\""));
+	}
+	
+	@Test
+	void emptyQuotesAreAnArgument() {
+		assertEquals(List.of("", "x", ""), tokenize("\"\" x ''"));
+	}
+	
+	@Test
+	void quotedAndUnquotedTextJoin() {
+		assertEquals(List.of("--name=a b"), tokenize("--name=\"a b\""));
+		assertEquals(List.of("abcd"), tokenize("a\"b\"'c'd"));
+	}
+	
+	@Test
+	void escapedQuotes() {
+		assertEquals(List.of("a \"b\" c"), tokenize("\"a \\\"b\\\" c\""));
+		assertEquals(List.of("\"a", "b\""), tokenize("\\\"a b\\\""));
+		assertEquals(List.of("a b"), tokenize("a\\ b"));
+		assertEquals(List.of("a\\b"), tokenize("a\\\\b"));
+		
+		//A backslash is literal inside of single quotes
+		assertEquals(List.of("a\\b"), tokenize("'a\\b'"));
+	}
+	
+	@Test
+	void unterminatedQuoteRunsToTheEnd() {
+		assertEquals(List.of("a", "b  c "), tokenize("a \"b  c "));
+		assertEquals(List.of("a", "b"), tokenize("a 'b"));
+		assertEquals(List.of(""), tokenize("\""));
+	}
+	
+	@Test
+	void trailingBackslashIsKept() {
+		assertEquals(List.of("a\\"), tokenize("a\\"));
+		assertEquals(List.of("a\\"), tokenize("\"a\\"));
+		assertEquals(List.of("a", "\\"), tokenize("a \\"));
+	}
+	
+	@Test
+	void pipelinesSplitOutsideOfQuotes() {
+		assertEquals(List.of("list", "filter x"), FiTokenizer.splitPipeline("list | filter x"));
+		assertEquals(List.of("echo \"a | b\" 'c|d' e\\|f"), FiTokenizer.splitPipeline("echo \"a | b\" 'c|d' e\\|f"));
+		assertEquals(List.of("a", "", "b"), FiTokenizer.splitPipeline("a || b"));
+	}
+}